@@ -0,0 +1,246 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : AllocationVerifier.java
+ *
+ * Description : La classe AllocationVerifier vérifie qu'un tour de jeu
+ *               n'alloue aucun objet.
+ *
+ * Commentaire : Le tour est joué comme par Game, affichage compris, sur une
+ *               image hors écran.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+// Imports
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+/**
+ * La classe AllocationVerifier, vérification de l'absence d'allocation : un
+ * Pacman piloté par programme (voir BotController) joue sans fenêtre, et la
+ * mémoire allouée par le thread pendant chaque tour est mesurée ; seuls les
+ * tours terminant une vie ou un niveau, qui rechargent celui-ci, ne sont pas
+ * comptés
+ */
+class AllocationVerifier
+{
+    // Nombre de tours joués avant les mesures, le temps que les classes
+    // soient chargées et les tables créées
+    private static final int WARMUP_TICKS = 20000;
+
+    // Compteur de mémoire allouée par thread
+    private static final com.sun.management.ThreadMXBean THREADS =
+	(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Rectangle de la vue de la grille (voir Game)
+    private static final Rectangle VIEW = Board.getRectangle();
+
+    // Grille et personnages, affichés comme dans le jeu
+    private final Board       board;
+    private final Pacman      pacman;
+    private final Ghost[]     ghosts = new Ghost[Simulation.MAX_NB_GHOSTS];
+    private final Simulation  simulation;
+    private final DirtyRegion dirty = new DirtyRegion();
+    private final Graphics    gc;
+
+    /**
+     * Constructeur : charge les images et les niveaux, et prépare une
+     * partie dans la difficulté indiquée
+     */
+    private AllocationVerifier(final int difficulty)
+    {
+	// Composant ne servant qu'à créer les images, hors écran
+	final Component component = new Component() {
+		public Image createImage(final int width, final int height)
+		{
+		    return new BufferedImage(width, height,
+					     BufferedImage.TYPE_INT_RGB);
+		}
+	    };
+	final ImageLoader loader = new ApplicationImageLoader(component);
+
+	board = new Board(loader, component);
+	board.initImages();
+	board.loadLevels();
+	pacman = new Pacman(board, loader);
+	for (int ghost = 0; ghost < ghosts.length; ghost++)
+	    ghosts[ghost] = new Ghost(board, loader, ghost, pacman);
+	simulation = new Simulation(board, pacman, ghosts);
+	simulation.setController(new BotController());
+	simulation.setHistory(new History(Game.HISTORY_SECONDS * 1000 /
+					  Game.DELAY));
+	simulation.setDifficulty(difficulty);
+	gc = component.createImage(VIEW.x + VIEW.width, VIEW.y + VIEW.height).
+	    getGraphics();
+    }
+
+    /**
+     * Commence une nouvelle partie
+     */
+    private void start(final int seed)
+    {
+	simulation.setSeed(seed);
+	simulation.resetGame();
+	simulation.nextLevel();
+	board.paint(gc);
+    }
+
+    /**
+     * Joue un tour : efface les personnages, les déplace puis les redessine
+     * (voir Game.actionPerformed()), et retourne les événements du tour
+     */
+    private int tick()
+    {
+	for (int ghost = 0; ghost < ghosts.length; ghost++)
+	    clear(ghosts[ghost]);
+	clear(pacman);
+
+	final int events = simulation.step();
+
+	for (int ghost = 0; ghost < ghosts.length; ghost++)
+	    ghosts[ghost].interpolate(Character.ALPHA_ONE);
+	pacman.interpolate(Character.ALPHA_ONE);
+	if (board.follow(pacman.getDrawPosition())) {
+	    board.paint(gc);
+	    dirty.add(VIEW);
+	} else {
+	    for (int ghost = 0; ghost < ghosts.length; ghost++)
+		board.addImage(dirty, ghosts[ghost].getDrawPosition());
+	    board.addImage(dirty, pacman.getDrawPosition());
+	}
+	for (int ghost = 0; ghost < ghosts.length; ghost++)
+	    ghosts[ghost].draw(gc);
+	pacman.draw(gc);
+
+	// Les zones à rafraîchir ne sont pas affichées
+	dirty.clear();
+	return events;
+    }
+
+    /**
+     * Efface un personnage là où il a été dessiné
+     */
+    private void clear(final Character chr)
+    {
+	board.clearImage(gc, chr.getDrawPosition());
+	board.addImage(dirty, chr.getDrawPosition());
+    }
+
+    /**
+     * Obtient la mémoire allouée jusqu'ici par le thread courant, en octets
+     */
+    private static long allocated()
+    {
+	return THREADS.getThreadAllocatedBytes(Thread.currentThread().
+					       getId());
+    }
+
+    /**
+     * Vérification : java AllocationVerifier [tours [difficulté]] joue le
+     * nombre de tours indiqué après la mise en route, et se termine avec
+     * le code de retour 1 si l'un d'eux a alloué de la mémoire. Les
+     * objets temporaires créés par Graphics.drawImage() ne sont éliminés
+     * que par l'analyse d'échappement de la machine virtuelle, si le
+     * compilateur intègre tout l'appel : la vérification n'a de sens
+     * qu'avec celle-ci (option par défaut), et une allocation signalée
+     * dans java.awt ou sun.java2d peut ne pas se reproduire d'une
+     * exécution à l'autre.
+     */
+    public static void main(final String argv[])
+    {
+	long ticks = 200000;
+	int  difficulty = 1;
+	try {
+	    if (argv.length > 0)
+		ticks = Long.parseLong(argv[0]);
+	    if (argv.length > 1)
+		difficulty = Integer.parseInt(argv[1]);
+	} catch (NumberFormatException e) {
+	    ticks = -1;
+	}
+	if (argv.length > 2 || ticks <= 0 || difficulty < 0 ||
+	    difficulty >= HomeScreen.CHOICES.length) {
+	    System.err.println("Utilisation : java AllocationVerifier " +
+			       "[tours [difficulté]]");
+	    System.exit(1);
+	}
+	if (!THREADS.isThreadAllocatedMemorySupported()) {
+	    System.err.println("Mesure de la mémoire allouée non disponible");
+	    System.exit(1);
+	}
+	THREADS.setThreadAllocatedMemoryEnabled(true);
+
+	final AllocationVerifier verifier = new AllocationVerifier(difficulty);
+	long measured = 0, bytes = 0, faulty = 0;
+	int  games = 0;
+	verifier.start(games++);
+
+	// La lecture du compteur peut elle-même allouer : sa part est
+	// retirée de chaque mesure
+	long overhead = 0;
+	for (long tick = 0; measured < ticks; tick++) {
+	    if (tick == WARMUP_TICKS) {
+		final long before = allocated();
+		overhead = allocated() - before;
+	    }
+
+	    final long before = allocated();
+	    final int  events = verifier.tick();
+	    final long used = allocated() - before - overhead;
+
+	    // Fin de vie ou de niveau : le niveau est rechargé, sans mesure
+	    if ((events & (Simulation.EVENT_WON |
+			   Simulation.EVENT_EATEN)) != 0) {
+		if (!verifier.simulation.endLevel())
+		    verifier.start(games++);
+		else
+		    verifier.board.paint(verifier.gc);
+		continue;
+	    }
+
+	    if (tick >= WARMUP_TICKS) {
+		measured++;
+		if (used > 0) {
+		    bytes += used;
+		    faulty++;
+		}
+	    }
+	}
+
+	System.out.println(measured + " tour(s) mesuré(s) sur " + games +
+			   " partie(s) : " + bytes + " octet(s) alloué(s) " +
+			   "par " + faulty + " tour(s)");
+	if (faulty > 0)
+	    System.exit(1);
+    }
+}
+
+// Fin du fichier
@@ -1,16 +1,16 @@
 /*
  * ---------------------------------------------------------------------------
  *
- * Facman -- Un clne de Pacman en Java
+ * Facman -- Un clône de Pacman en Java
  * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
  *
  * ---------------------------------------------------------------------------
  *
  * Fichier     : AppletImageLoader.java
  *
- * Description : Classe ApplicationImageLoader drivant de ImageLoader et
- *               implmentant les mthodes de chargement et de cration
- *               d'images pour une applet.
+ * Description : Classe ApplicationImageLoader dérivant de ImageLoader et
+ *               implémentant la localisation des images pour une
+ *               applet.
  *
  * Commentaire : La version pour application autonome est la classe
  *               ApplicationImageLoader.
@@ -18,35 +18,35 @@
  * ---------------------------------------------------------------------------
  *
  * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
- * modifier conformment aux dispositions de la Licence Publique Gnrale GNU,
- * telle que publie par la Free Software Foundation ; version 2 de la
- * licence, ou encore ( votre convenance) toute version ultrieure.
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
  *
- * Ce programme est distribu dans l'espoir qu'il sera utile, mais SANS AUCUNE
- * GARANTIE ; sans mme la garantie implicite de COMMERCIALISATION ou
- * D'ADAPTATION  UN OBJET PARTICULIER. Pour plus de dtail, voir la Licence
- * Publique Gnrale GNU.
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
  *
- * Vous devez avoir reu un exemplaire de la Licence Publique Gnrale GNU en
- * mme temps que ce programme ; si ce n'est pas le cas, crivez  la Free
- * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, tats-Unis.
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
  *
  * ---------------------------------------------------------------------------
  */
 
 
 // Imports
-import java.awt.Image;
-import java.awt.image.ImageProducer;
 import java.applet.Applet;
+import java.net.MalformedURLException;
+import java.net.URL;
 
 /**
- * Classe AppletImageLoader permettant de charger des images : implmentation
+ * Classe AppletImageLoader permettant de charger des images : implémentation
  * pour une applet
  */
 class AppletImageLoader extends ImageLoader
 {
-    // Objets utiliss
+    // Objets utilisés
     private final Applet applet;
 
     /**
@@ -62,19 +62,15 @@ class AppletImageLoader extends ImageLoader
     }
 
     /**
-     * Charge une image depuis un fichier
+     * Obtient l'adresse d'un fichier image, relativement à celle de l'applet
      */
-    protected Image getImage(final String filename)
+    protected URL getURL(final String filename)
     {
-	return applet.getImage(applet.getCodeBase(), PATH + filename + EXT);
-    }
-
-    /**
-     * Cre une nouvelle image
-     */
-    protected Image createImage(final ImageProducer producer)
-    {
-	return applet.createImage(producer);
+	try {
+	    return new URL(applet.getCodeBase(), PATH + filename + EXT);
+	} catch (MalformedURLException e) {
+	    return null;
+	}
     }
 }
 
@@ -0,0 +1,307 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : BalanceAnalyzer.java
+ *
+ * Description : La classe BalanceAnalyzer joue sans affichage un grand nombre
+ *               de parties sur chaque niveau et à chaque difficulté, avec un
+ *               Pacman piloté par programme, et en tire des statistiques
+ *               d'équilibrage.
+ *
+ * Commentaire : Les parties d'un niveau sont réparties sur tous les
+ *               processeurs (pool fork/join) ; seules les statistiques
+ *               agrégées du niveau en cours sont gardées en mémoire, et elles
+ *               sont écrites dès que le niveau est terminé, ce qui permet
+ *               d'analyser un paquet de niveaux de n'importe quelle taille.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+// Imports
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * La classe BalanceAnalyzer, analyse de l'équilibre des niveaux et des
+ * difficultés, Pacman étant piloté par BotController : chaque partie
+ * commence directement au niveau analysé et s'arrête à la première mort de
+ * Pacman, à la fin du niveau ou après MAX_TICKS tours.
+ */
+class BalanceAnalyzer
+{
+    // Nombre de parties par niveau et par difficulté, par défaut, et durée
+    // maximale d'une partie en tours (trois minutes de jeu)
+    private static final int DEFAULT_GAMES = 1000;
+    private static final int MAX_TICKS = 3 * 60 * 1000 / Game.DELAY;
+
+    // Nombre de parties en dessous duquel une tâche n'est plus divisée
+    private static final int THRESHOLD = 16;
+
+    // Nombre de cases où Pacman meurt le plus souvent, à afficher
+    private static final int TOP_DEATHS = 3;
+
+    // Simulation et joueur de chaque thread, créés à sa première partie
+    private static final ThreadLocal SIMULATION = new ThreadLocal() {
+	    protected Object initialValue()
+	    {
+		final Board board = new Board();
+		board.loadLevels();
+		return new Simulation(board);
+	    }
+	};
+    private static final ThreadLocal PLAYER = new ThreadLocal() {
+	    protected Object initialValue()
+	    {
+		return new BotController();
+	    }
+	};
+
+    /**
+     * Statistiques agrégées d'un ensemble de parties jouées sur un même
+     * niveau, à une même difficulté
+     */
+    private static class Stats
+    {
+	int   games, wins, deaths, timeouts;
+	long  survival, gums;
+	int   maxSurvival;
+	int[] deathCells = null;
+
+	/**
+	 * Ajoute le résultat d'une partie
+	 */
+	void add(final int events, final int ticks, final int eaten,
+		 final Position death, final int width, final int height)
+	{
+	    games++;
+	    survival += ticks;
+	    gums     += eaten;
+	    maxSurvival = Math.max(maxSurvival, ticks);
+
+	    if ((events & Simulation.EVENT_WON) != 0)
+		wins++;
+	    else if ((events & Simulation.EVENT_EATEN) != 0) {
+		deaths++;
+		if (deathCells == null)
+		    deathCells = new int[width * height];
+		deathCells[death.y * width + death.x]++;
+	    } else
+		timeouts++;
+	}
+
+	/**
+	 * Ajoute les statistiques d'un autre ensemble de parties
+	 */
+	void merge(final Stats stats)
+	{
+	    games    += stats.games;
+	    wins     += stats.wins;
+	    deaths   += stats.deaths;
+	    timeouts += stats.timeouts;
+	    survival += stats.survival;
+	    gums     += stats.gums;
+	    maxSurvival = Math.max(maxSurvival, stats.maxSurvival);
+
+	    if (stats.deathCells != null) {
+		if (deathCells == null)
+		    deathCells = stats.deathCells;
+		else
+		    for (int i = 0; i < deathCells.length; i++)
+			deathCells[i] += stats.deathCells[i];
+	    }
+	}
+    }
+
+    /**
+     * Tâche jouant une partie des parties d'un niveau à une difficulté, et
+     * retournant leurs statistiques
+     */
+    private static class Games extends RecursiveTask
+    {
+	private final int level, difficulty, start, end;
+
+	Games(final int level, final int difficulty, final int start,
+	      final int end)
+	{
+	    this.level      = level;
+	    this.difficulty = difficulty;
+	    this.start      = start;
+	    this.end        = end;
+	}
+
+	protected Object compute()
+	{
+	    if (end - start > THRESHOLD) {
+		final int   middle = (start + end) >>> 1;
+		final Games left = new Games(level, difficulty, start, middle);
+		left.fork();
+		final Stats stats = (Stats)
+		    new Games(level, difficulty, middle, end).compute();
+		stats.merge((Stats) left.join());
+		return stats;
+	    }
+
+	    final Stats stats = new Stats();
+	    for (int game = start; game < end; game++)
+		play(level, difficulty, game, stats);
+	    return stats;
+	}
+    }
+
+    /**
+     * Constructeur privé : classe utilitaire
+     */
+    private BalanceAnalyzer() {}
+
+    /**
+     * Joue une partie avec la simulation du thread courant ; la graine ne
+     * dépend que du niveau, de la difficulté et du numéro de la partie, ce
+     * qui rend l'analyse reproductible
+     */
+    static void play(final int level, final int difficulty, final int game,
+		     final Stats stats)
+    {
+	final Simulation    simulation = (Simulation) SIMULATION.get();
+	final BotController player = (BotController) PLAYER.get();
+	final Board         board = simulation.getBoard();
+
+	final long seed = (long) level << 32 ^ (long) difficulty << 24 ^ game;
+	simulation.setDifficulty(difficulty);
+	simulation.setSeed(seed);
+	simulation.setController(player);
+	simulation.startLevel(level);
+	player.reset(~seed);
+
+	final int total = board.getGumCount();
+	int events = 0, tick;
+	for (tick = 0; tick < MAX_TICKS; tick++) {
+	    events = simulation.step();
+	    if ((events & (Simulation.EVENT_WON |
+			   Simulation.EVENT_EATEN)) != 0) {
+		tick++;
+		break;
+	    }
+	}
+
+	stats.add(events, tick, total - board.getGumCount(),
+		  simulation.getPacman().getBoxPosition(), board.getWidth(),
+		  board.getHeight());
+    }
+
+    /**
+     * Écrit les statistiques d'un niveau à une difficulté
+     */
+    private static void report(final int level, final int difficulty,
+			       final Stats stats, final int width,
+			       final int gums)
+    {
+	final StringBuffer line = new StringBuffer();
+
+	line.append("niveau " + (level + 1) + ", " +
+		    HomeScreen.CHOICES[difficulty] + " : " + stats.games +
+		    " parties, " + percent(stats.wins, stats.games) +
+		    " gagnées, " + percent(stats.deaths, stats.games) +
+		    " perdues, " + percent(stats.timeouts, stats.games) +
+		    " interrompues ; survie " + stats.survival / stats.games +
+		    " tours en moyenne (max " + stats.maxSurvival +
+		    ") ; pastilles " + stats.gums / stats.games + "/" + gums);
+
+	// Cases où Pacman meurt le plus souvent
+	if (stats.deathCells != null) {
+	    line.append(" ; morts :");
+	    final int[] cells = stats.deathCells;
+	    for (int n = 0; n < TOP_DEATHS; n++) {
+		int best = 0;
+		for (int i = 1; i < cells.length; i++)
+		    if (cells[i] > cells[best])
+			best = i;
+		if (cells[best] == 0)
+		    break;
+		line.append(" (" + best % width + "," + best / width + ") " +
+			    percent(cells[best], stats.deaths));
+		cells[best] = 0;
+	    }
+	}
+	System.out.println(line);
+    }
+
+    /**
+     * Formate un pourcentage arrondi
+     */
+    private static String percent(final int count, final int total)
+    {
+	return (total > 0 ? (count * 100 + total / 2) / total : 0) + " %";
+    }
+
+    /**
+     * Analyse les niveaux : java BalanceAnalyzer [parties [premier
+     * [dernier]]], les niveaux étant numérotés à partir de 1
+     */
+    public static void main(final String argv[])
+    {
+	final Board board = new Board();
+	board.loadLevels();
+
+	int games = DEFAULT_GAMES, first = 1, last = board.getLevelCount();
+	try {
+	    if (argv.length > 0)
+		games = Integer.parseInt(argv[0]);
+	    if (argv.length > 1)
+		first = Integer.parseInt(argv[1]);
+	    if (argv.length > 2)
+		last = Integer.parseInt(argv[2]);
+	} catch (NumberFormatException e) {
+	    games = 0;
+	}
+	if (argv.length > 3 || games <= 0 || first < 1 ||
+	    last > board.getLevelCount() || first > last) {
+	    System.err.println("Utilisation : java BalanceAnalyzer " +
+			       "[parties [premier [dernier]]]");
+	    System.exit(1);
+	}
+
+	// Les niveaux sont analysés l'un après l'autre, les parties de
+	// chacun en parallèle
+	final ForkJoinPool pool = new ForkJoinPool();
+	final long         start = System.nanoTime();
+	for (int level = first - 1; level < last; level++) {
+	    board.setLevel(level);
+	    board.nextLevel();
+	    for (int difficulty = 0; difficulty < HomeScreen.CHOICES.length;
+		 difficulty++)
+		report(level, difficulty,
+		       (Stats) pool.invoke(new Games(level, difficulty, 0,
+						     games)),
+		       board.getWidth(), board.getGumCount());
+	}
+	System.out.println((last - first + 1) * HomeScreen.CHOICES.length *
+			   (long) games + " partie(s) en " +
+			   (System.nanoTime() - start) / 1000000 + " ms sur " +
+			   pool.getParallelism() + " thread(s)");
+    }
+}
+
+// Fin du fichier
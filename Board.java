@@ -1,15 +1,15 @@
 /*
  * ---------------------------------------------------------------------------
  *
- * Facman -- Un clne de Pacman en Java
+ * Facman -- Un clône de Pacman en Java
  * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
  *
  * ---------------------------------------------------------------------------
  *
  * Fichier     : Board.java
  *
- * Description : La classe Board gre la grille de jeu. C'est elle qui est
- *               charge d'initialiser les niveaux ainsi que la position et la
+ * Description : La classe Board gère la grille de jeu. C'est elle qui est
+ *               chargée d'initialiser les niveaux ainsi que la position et la
  *               direction initiale des personnages.
  *
  * Commentaire : Cette classe charge les niveaux depuis les fichiers
@@ -18,25 +18,26 @@
  * ---------------------------------------------------------------------------
  *
  * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
- * modifier conformment aux dispositions de la Licence Publique Gnrale GNU,
- * telle que publie par la Free Software Foundation ; version 2 de la
- * licence, ou encore ( votre convenance) toute version ultrieure.
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
  *
- * Ce programme est distribu dans l'espoir qu'il sera utile, mais SANS AUCUNE
- * GARANTIE ; sans mme la garantie implicite de COMMERCIALISATION ou
- * D'ADAPTATION  UN OBJET PARTICULIER. Pour plus de dtail, voir la Licence
- * Publique Gnrale GNU.
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
  *
- * Vous devez avoir reu un exemplaire de la Licence Publique Gnrale GNU en
- * mme temps que ce programme ; si ce n'est pas le cas, crivez  la Free
- * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, tats-Unis.
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
  *
  * ---------------------------------------------------------------------------
  */
 
 
 // Imports
-import java.util.Vector;
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
@@ -50,54 +51,157 @@ import java.awt.Component;
  */
 class Board
 {
-    // Variables concernant la taille des cases et de la fentre
+    // Variables concernant la taille des cases et de la fenêtre ; la vue,
+    // partie visible de la grille, garde la taille par défaut des niveaux
+    // et suit Pacman quand le niveau est plus grand
     private static final int BOX_SIZE = 32;
-    private static final int WIDTH = 19, HEIGHT = 13;
+    static         final int DEFAULT_WIDTH = 19, DEFAULT_HEIGHT = 13;
+    static         final int MAX_SIZE = 1024;
+    private static final int VIEW_WIDTH = DEFAULT_WIDTH * BOX_SIZE;
+    private static final int VIEW_HEIGHT = DEFAULT_HEIGHT * BOX_SIZE;
     private static final int LEFT = BOX_SIZE / 2, TOP = BOX_SIZE * 3 / 2;
 
-    // Variables concernant les cases et la grille
-    private static final byte     BOX_EMPTY = 0;
-    private static final byte     BOX_GUM = 1, BOX_SUPERGUM = 2;
-    private static final byte     BOX_GHOSTS = 3, BOX_TELEPORTERS = 4;
-    private static final byte     BOX_WALL = BOX_TELEPORTERS + 20;
-    private        final Vector   boards = new Vector();
-    private        final byte[][] board = new byte[HEIGHT][WIDTH];
+    // Variables concernant les cases et la grille ; les niveaux viennent
+    // du paquet compilé s'il existe (voir LevelPack), sinon des fichiers
+    // texte, et ne sont lus qu'au moment d'être joués (voir LevelCache)
+    static         final byte       BOX_EMPTY = 0;
+    static         final byte       BOX_GUM = 1, BOX_SUPERGUM = 2;
+    static         final byte       BOX_GHOSTS = 3, BOX_TELEPORTERS = 4;
+    static         final byte       BOX_WALL = BOX_TELEPORTERS + 20;
+    private static final String     PACK_FILE = "levels/levels.pak";
+    private              int        levelCount = 0;
+    private              LevelPack  pack = null;
+    private        final LevelCache cache;
+
+    // Grille du niveau courant, partagée avec le niveau car elle n'est
+    // jamais modifiée, et ses dimensions en cases
+    private int         width = DEFAULT_WIDTH, height = DEFAULT_HEIGHT;
+    private ChunkedGrid board = new ChunkedGrid(width, height);
+
+    // Pastilles restantes, un bit par case (indice y * width + x) : gums
+    // est recopié depuis le niveau au début de chaque partie, superGums est
+    // partagé avec lui. gumCount est recalculé en comptant les bits à
+    // chaque recopie, puis décrémenté à chaque bit effacé.
+    private long[] gums = new long[0], superGums = gums;
+    private int    gumCount;
+
+    // Table des sorties de chaque case, calculée au chargement du niveau :
+    // les bits 0 à 3 indiquent si les cases voisines dans les directions
+    // gauche, droite, haut et bas (voir Character) ne sont pas des murs, les
+    // bits 4 à 7 la même chose pour les cases en diagonale. La table est
+    // entourée d'une bordure de murs (sans aucune sortie), ce qui évite de
+    // tester les coordonnées ; steps contient le décalage d'indice de
+    // chaque direction. Cette table et les suivantes sont calculées par
+    // Level et partagées avec lui ; elles sont creuses (voir ChunkedTable).
+    static final int          EXIT_LEFT = 1, EXIT_RIGHT = 2;
+    static final int          EXIT_UP = 4, EXIT_DOWN = 8;
+    static final int          EXIT_UP_LEFT = 16, EXIT_UP_RIGHT = 32;
+    static final int          EXIT_DOWN_LEFT = 64, EXIT_DOWN_RIGHT = 128;
+    static final int[]        EXIT_X = {-1, 1, 0, 0, -1, 1, -1, 1};
+    static final int[]        EXIT_Y = {0, 0, -1, 1, -1, -1, 1, 1};
+    private      int          stride = width + 2;
+    private      int[]        steps = {-1, 1, -stride, stride};
+    private      ChunkedTable exits = new ChunkedTable(stride * (height + 2),
+						       0);
+
+    // Destination du téléporteur de chaque case (indice dans la table des
+    // sorties), ou -1 si la case n'est pas un téléporteur
+    private ChunkedTable destinations =
+	new ChunkedTable(stride * (height + 2), -1);
 
     // Variables concernant les positions
     private final Position   pacmanPos   = new Position();
     private final Position   ghostPos    = new Position();
     private       int        pacmanDir, ghostDir;
-    private final Position[] teleporters = new Position[20];
-
-    // Variables relatives au niveau courant
-    private int level;
-    private int gumCount;
-
-    // Images
+    private       Position[] teleporters = new Position[20];
+
+    // Variables relatives au niveau courant ; version est incrémentée à
+    // chaque chargement d'un niveau, et le niveau chargé (number) est
+    // retenu dans le cache tant qu'il est joué
+    private int   level;
+    private Level current = null;
+    private int   number  = -1;
+    private int   version = 0;
+
+    // Champ de directions vers Pacman, partagé par les fantômes
+    private final FlowField flowField = new FlowField(this);
+
+    // Position de la vue dans le niveau, en pixels
+    private final Position camera = new Position();
+
+    // Images ; maze contient les cases couvertes par la vue pré-dessinées,
+    // à partir de la case (mazeX, mazeY), avec une case de plus dans
+    // chaque dimension pour les positions intermédiaires. Elle est tenue à
+    // jour case par case et n'est redessinée entièrement qu'après le
+    // chargement d'un niveau (mazeValid faux) ou quand la vue change de
+    // case.
     private final Image[][] background;
+    private       Image     maze = null;
+    private       Graphics  mazeGc;
+    private       boolean   mazeValid = false;
+    private       int       mazeX, mazeY;
 
     // Objets auxiliaires
     private final ImageLoader loader;
     private final Component component;
-    private final Game game;
 
     /**
      * Constructeur de la classe Board
      */
-    public Board(final ImageLoader loader, final Component component,
-		 final Game game)
+    public Board(final ImageLoader loader, final Component component)
     {
 	// Initialisation des variables
 	this.loader = loader;
 	this.component = component;
-	this.game = game;
+	cache = new LevelCache(this);
 
 	// Chargement des images
 	background = loader.load("boxes", 3, 2);
     }
 
     /**
-     * Cre les images des cases
+     * Constructeur de la classe Board sans affichage : aucune image n'est
+     * chargée, seules les méthodes relatives à la grille sont utilisables
+     */
+    public Board()
+    {
+	loader = null;
+	component = null;
+	background = null;
+	cache = new LevelCache(this);
+    }
+
+    /**
+     * Constructeur de la classe Board sans affichage partageant les niveaux
+     * d'une autre grille, dont les niveaux ont été recensés : chaque niveau
+     * n'est alors lu et préparé qu'une fois pour toutes les grilles (voir
+     * GameServer) ; le cache commun garde les niveaux en jeu et relit les
+     * autres à la demande, release() devant être appelée une fois la
+     * grille abandonnée
+     */
+    public Board(final Board levels)
+    {
+	loader = null;
+	component = null;
+	background = null;
+	cache = levels.cache;
+	pack = levels.pack;
+	levelCount = levels.levelCount;
+    }
+
+    /**
+     * Libère le niveau chargé dans le cache, éventuellement partagé, par
+     * exemple quand la grille est abandonnée
+     */
+    public void release()
+    {
+	if (number >= 0)
+	    cache.release(number);
+	number = -1;
+    }
+
+    /**
+     * Crée les images des cases
      */
     public void initImages()
     {
@@ -110,10 +214,16 @@ class Board
 	    gum.getGraphics().drawImage(background[1][i], 0, 0, component);
 	    background[1][i] = gum;
 	}
+
+	// Crée l'image de la grille
+	maze   = component.createImage(VIEW_WIDTH + BOX_SIZE,
+				   VIEW_HEIGHT + BOX_SIZE);
+	mazeGc = maze.getGraphics();
+	mazeValid = false;
     }
 
     /**
-     * Rinitialise le compteur de niveaux ; nextLevel() doit tre appele
+     * Réinitialise le compteur de niveaux ; nextLevel() doit être appelée
      * ensuite pour charger le premier niveau.
      */
     public void resetLevel()
@@ -121,121 +231,152 @@ class Board
 	level = 0;
     }
 
+    /**
+     * Positionne le compteur de niveaux : nextLevel() chargera ensuite le
+     * niveau indiqué (à partir de 0), sans charger les précédents
+     */
+    public void setLevel(final int number)
+    {
+	if (number < 0 || number > getLevelCount())
+	    throw new IllegalArgumentException("Niveau inexistant : " +
+					       (number + 1));
+	level = number;
+    }
+
     /**
      * Charge le niveau suivant
      */
     public boolean nextLevel()
     {
-	if (level < boards.size())
+	if (level < getLevelCount())
 	    return load(level++);
 	return false;
     }
 
+    /**
+     * Recommence le niveau courant : seules les pastilles sont remises en
+     * place, par recopie de celles du niveau
+     */
+    public void restartLevel()
+    {
+	if (current == null)
+	    return;
+
+	System.arraycopy(current.gums, 0, gums, 0, gums.length);
+	gumCount = 0;
+	for (int i = 0; i < gums.length; i++)
+	    gumCount += Long.bitCount(gums[i]);
+	mazeValid = false;
+    }
+
     /**
      * Initialise un niveau
      */
     private boolean load(final int number)
     {
-	// Vrifie le numro du niveau
-	if (number < 0 || number >= boards.size())
+	// Vérifie le numéro du niveau
+	if (number < 0 || number >= getLevelCount())
 	    return false;
 
-	// Rcupre le tableau o est stock le niveau
-	final byte[][] array = (byte[][]) boards.elementAt(number);
-	char chr;
-
-	// Initialise les tlporteurs
-	for (int i = 0; i < teleporters.length; i++)
-	    teleporters[i] = null;
-
-	// Initialise chaque case de la grille
-	for (int y = 0; y < HEIGHT; y++)
-	    for (int x = 0; x < WIDTH; x++)
-		switch ((chr = (char) array[y][x])) {
-		case '#':
-		    board[y][x] = BOX_WALL;
-		    break;
-
-		case ' ':
-		    board[y][x] = BOX_EMPTY;
-		    break;
-
-		case '.':
-		    board[y][x] = BOX_GUM;
-		    gumCount++;
-		    break;
-
-		case 'o':
-		    board[y][x] = BOX_SUPERGUM;
-		    gumCount++;
-		    break;
-
-		case '<':
-		    board[y][x] = BOX_EMPTY;
-		    pacmanDir = 0;
-		    pacmanPos.setPosition(x, y);
-		    break;
-
-		case '>':
-		    board[y][x] = BOX_EMPTY;
-		    pacmanDir = 1;
-		    pacmanPos.setPosition(x, y);
-		    break;
-
-		case '^':
-		    board[y][x] = BOX_EMPTY;
-		    pacmanDir = 2;
-		    pacmanPos.setPosition(x, y);
-		    break;
-
-		case 'v':
-		    board[y][x] = BOX_EMPTY;
-		    pacmanDir = 3;
-		    pacmanPos.setPosition(x, y);
-		    break;
-
-		case 'G':
-		    board[y][x] = BOX_GHOSTS;
-		    ghostPos.setPosition(x, y);
-		    break;
-
-		case '\n':
-		    while (x < WIDTH)
-			board[y][x++] = BOX_WALL;
-		    x = -1;
-		    y++;
-		    break;
-
-		default:
-		    if (chr >= '0' && chr <= '9') {
-			// Ajout du tlporteur  la liste
-			int value = (int) (chr - '0');
-			board[y][x] = (byte) (BOX_TELEPORTERS + value);
-
-			if (teleporters[value] == null)
-			    // Premire occurence du tlporteur
-			    teleporters[value] = new Position(x, y);
-			else {
-			    // Deuxime occurence : change des coordonnes
-			    teleporters[value + 10] = new Position(x, y);
-			    board[teleporters[value].y]
-				[teleporters[value].x] =
-				(byte) (BOX_TELEPORTERS + value + 10);
-			}
-		    }
-		}
-
-	// Niveau charg correctement
+	// Récupère le niveau préparé et le retient à la place du précédent,
+	// et fait préparer le suivant pendant que celui-ci est joué
+	final Level next = cache.acquire(number);
+	release();
+	this.number = number;
+	if (number + 1 < getLevelCount())
+	    cache.prefetch(number + 1);
+
+	// Grille et pastilles ; ces dernières sont recopiées par
+	// restartLevel()
+	current   = next;
+	width     = next.width;
+	height    = next.height;
+	board     = next.board;
+	superGums = next.superGums;
+	if (gums.length != next.gums.length)
+	    gums = new long[next.gums.length];
+
+	// Positions initiales
+	pacmanPos.setPosition(next.pacmanPos.x, next.pacmanPos.y);
+	ghostPos.setPosition(next.ghostPos.x, next.ghostPos.y);
+	pacmanDir = next.pacmanDir;
+
+	// Les tables calculées ne sont jamais modifiées : elles sont
+	// partagées avec le niveau
+	teleporters  = next.teleporters;
+	stride       = next.stride;
+	steps        = next.steps;
+	exits        = next.exits;
+	destinations = next.destinations;
+	version++;
+	restartLevel();
+
+	// Niveau chargé correctement
 	return true;
     }
 
     /**
-     * Charge un niveau portant le numro indiqu
+     * Obtient l'indice d'une case dans les tables calculées au chargement
+     */
+    int cell(final int x, final int y)
+    {
+	return (y + 1) * stride + x + 1;
+    }
+
+    /**
+     * Obtient le nombre de cases des tables calculées au chargement,
+     * bordure comprise
+     */
+    int getCellCount()
+    {
+	return exits.size();
+    }
+
+    /**
+     * Obtient le décalage d'indice correspondant à chaque direction dans
+     * les tables calculées au chargement ; le tableau ne doit pas être
+     * modifié
+     */
+    int[] getSteps()
+    {
+	return steps;
+    }
+
+    /**
+     * Charge un niveau portant le numéro indiqué
      */
     private static byte[][] loadLevel(final int number)
     {
-	return loadFile("levels/level" + ((number / 100 % 10)) +
-			((number / 10) % 10) + (number % 10) + ".txt");
+	return loadFile(levelFile(number));
+    }
+
+    /**
+     * Lit un niveau (numéroté à partir de 0) depuis le paquet ou depuis son
+     * fichier texte ; peut être appelée depuis un autre thread
+     */
+    byte[][] readLevel(final int number)
+    {
+	return pack != null ? pack.getLevel(number) : loadLevel(number + 1);
+    }
+
+    /**
+     * Obtient le nom du fichier d'un niveau
+     */
+    private static String levelFile(final int number)
+    {
+	return "levels/" + levelName(number);
+    }
+
+    /**
+     * Obtient le nom de fichier d'un niveau, sans le répertoire (au moins
+     * trois chiffres)
+     */
+    static String levelName(final int number)
+    {
+	String digits = "" + number;
+	while (digits.length() < 3)
+	    digits = "0" + digits;
+	return "level" + digits + ".txt";
     }
 
     /**
@@ -243,20 +384,42 @@ class Board
      */
     private static byte[][] loadFile(final String file)
     {
-	final byte[][]     board = new byte[HEIGHT][WIDTH];
-	final StringBuffer buf = new StringBuffer();
-	final InputStream  stream = Board.class.getResourceAsStream(file);
+	final InputStream stream = Board.class.getResourceAsStream(file);
+	return stream != null ? readLevel(stream) : null;
+    }
+
+    /**
+     * Lit un niveau au format texte et ferme le flux ; retourne null si le
+     * niveau est illisible
+     */
+    static byte[][] readLevel(final InputStream input)
+    {
+	final InputStream stream = new BufferedInputStream(input);
+	int width = DEFAULT_WIDTH, height = DEFAULT_HEIGHT;
 	int x = 0, y = 0, chr;
+	byte[][] board;
 
-	// Rcupre les octets du fichier
+	// Récupère les octets du fichier
 	try {
-	    while (y < HEIGHT && (chr = stream.read()) != -1) {
-		if (x < WIDTH) {
+	    // Taille déclarée sur la première ligne, de la forme "@64x48"
+	    stream.mark(1);
+	    if (stream.read() == '@') {
+		width  = readNumber(stream, 'x');
+		height = readNumber(stream, '\n');
+	    } else
+		stream.reset();
+	    if (width < 1 || height < 1 || width > MAX_SIZE ||
+		height > MAX_SIZE)
+		return null;
+	    board = new byte[height][width];
+
+	    while (y < height && (chr = stream.read()) != -1) {
+		if (x < width) {
 		    if ((char) chr != '\n')
 			board[y][x] = (byte) chr;
 		    else {
 			// Remplit le reste de la ligne de murs
-			while (x < WIDTH)
+			while (x < width)
 			    board[y][x++] = '#';
 			x = -1;
 			y++;
@@ -273,60 +436,137 @@ class Board
 			chr = stream.read();
 		    }
 	    }
-
-	    stream.close();
 	} catch (Exception e) {
 	    return null;
+	} finally {
+	    try {
+		stream.close();
+	    } catch (IOException e) {
+		// Le niveau est lu, ou déjà illisible
+	    }
 	}
 
 	// Remplit ce qui reste de murs
-	if (y < HEIGHT) {
-	    while (x < WIDTH)
+	if (y < height) {
+	    while (x < width)
 		board[y][x++] = '#';
-	    while (y < HEIGHT) {
-		for (x = 0; x < WIDTH; x++)
+	    while (y < height) {
+		for (x = 0; x < width; x++)
 		    board[y][x] = '#';
 		y++;
 	    }
 	}
 
-	// Retour du rsultat
+	// Retour du résultat
 	return board;
     }
 
     /**
-     * Charge tous les niveaux
+     * Lit un nombre décimal terminé par le caractère indiqué ; retourne -1
+     * si le nombre est mal formé
+     */
+    private static int readNumber(final InputStream stream, final char end)
+	throws IOException
+    {
+	int number = 0, digits = 0, chr;
+
+	while ((chr = stream.read()) >= '0' && chr <= '9' && digits < 5) {
+	    number = number * 10 + chr - '0';
+	    digits++;
+	}
+
+	// Un retour chariot peut précéder la fin de ligne
+	if (chr == '\r' && end == '\n')
+	    chr = stream.read();
+	return chr == end && digits > 0 ? number : -1;
+    }
+
+    /**
+     * Recense les niveaux : seul le paquet compilé est ouvert, ou les
+     * fichiers texte présents dénombrés ; chaque niveau n'est lu
+     * qu'au moment d'être joué, ou préparé juste avant
      */
     public void loadLevels()
     {
-	byte[][] level;
+	cache.clear();
+	pack = null;
+	levelCount = 0;
+
+	if (loadPack())
+	    levelCount = pack.getCount();
+	else
+	    // Niveau de 1 à 999
+	    while (levelCount < 999 &&
+		   Board.class.getResource(levelFile(levelCount + 1)) != null)
+		levelCount++;
+
+	// Le premier niveau est préparé d'avance
+	if (levelCount > 0)
+	    cache.prefetch(0);
+    }
 
-	// Niveau de 1  999
-	for (int i = 1; i < 1000; i++)
-	    if ((level = loadLevel(i)) != null)
-		boards.add(level);
-	    else
-		break;
+    /**
+     * Recense les niveaux et prépare le premier pendant le chargement
+     * parallèle
+     */
+    public void loadLevels(final Startup startup)
+    {
+	loadLevels();
+
+	if (levelCount > 0)
+	    startup.submit(new Runnable() {
+		    public void run()
+		    {
+			cache.get(0);
+		    }
+		});
     }
 
     /**
-     * Obtient le numro de niveau courant
+     * Ouvre le paquet de niveaux compilé, s'il existe
+     */
+    private boolean loadPack()
+    {
+	final URL url = Board.class.getResource(PACK_FILE);
+	if (url == null)
+	    return false;
+
+	try {
+	    pack = LevelPack.open(url);
+	} catch (IOException e) {
+	    throw new IllegalStateException("Paquet de niveaux non chargé : " +
+					    e.getMessage());
+	}
+	return true;
+    }
+
+    /**
+     * Obtient le numéro de niveau courant
      */
     public int getLevel()
     {
 	return level;
     }
 
+    /**
+     * Permet de savoir si un niveau (à partir de 0) peut être chargé sans
+     * attendre sa préparation, qui est lancée si besoin
+     */
+    public boolean isLevelReady(final int number)
+    {
+	return cache.isReady(number);
+    }
+
     /**
      * Obtient le nombre total de niveaux
      */
     public int getLevelCount()
     {
-	return boards.size();
+	return levelCount;
     }
 
     /**
-     * Obtient la taille du ct d'une case en pixels
+     * Obtient la taille du côté d'une case en pixels
      */
     public static int getBoxSize()
     {
@@ -334,53 +574,120 @@ class Board
     }
 
     /**
-     * Mthode permettant de savoir si une case est un mur
+     * Méthode permettant de savoir si une case est un mur
      */
     public boolean isBoxWall(Position pos)
     {
-	if (pos.x < 0 || pos.x >= WIDTH || pos.y < 0 || pos.y >= HEIGHT)
-	    return true;
-	return board[pos.y][pos.x] >= BOX_WALL;
+	return isBoxWall(pos.x, pos.y);
     }
 
     /**
-     * Mthode permettant de savoir si une case est un tlporteur
+     * Méthode permettant de savoir si une case est un mur (version avec
+     * coordonnées sous forme de deux entiers)
+     */
+    public boolean isBoxWall(final int x, final int y)
+    {
+	// Les cases hors de la grille sont des murs
+	return board.get(x, y) >= BOX_WALL;
+    }
+
+    /**
+     * Méthode permettant de savoir si une case est un téléporteur
      */
     public boolean isBoxTeleporter(Position pos)
     {
-	if (pos.x < 0 || pos.x >= WIDTH || pos.y < 0 || pos.y >= HEIGHT)
+	if (pos.x < 0 || pos.x >= width || pos.y < 0 || pos.y >= height)
 	    return true;
-	return board[pos.y][pos.x] >= BOX_TELEPORTERS &&
-	    board[pos.y][pos.x] < BOX_WALL;
+	final byte box = board.get(pos.x, pos.y);
+	return box >= BOX_TELEPORTERS && box < BOX_WALL;
+    }
+
+    /**
+     * Obtient les sorties d'une case (masque des constantes EXIT_*) ; la
+     * case doit se trouver dans la grille ou sur sa bordure
+     */
+    public int getExits(final int x, final int y)
+    {
+	return exits.get(cell(x, y));
+    }
+
+    /**
+     * Si la position indiquée est un téléporteur, la remplace par sa
+     * destination et retourne true ; la position doit se trouver dans la
+     * grille ou sur sa bordure
+     */
+    public boolean teleport(final Position pos)
+    {
+	final int dest = destinations.get(cell(pos.x, pos.y));
+
+	if (dest < 0)
+	    return false;
+	pos.setPosition(dest % stride - 1, dest / stride - 1);
+	return true;
+    }
+
+    /**
+     * Obtient les sorties d'une case à partir de son indice (voir cell())
+     */
+    int getCellExits(final int cell)
+    {
+	return exits.get(cell);
+    }
+
+    /**
+     * Obtient l'indice de la destination du téléporteur d'une case à partir
+     * de son indice, ou -1 si la case n'est pas un téléporteur
+     */
+    int getDestination(final int cell)
+    {
+	return destinations.get(cell);
     }
 
     /**
-     * Obtient la position d'arrive d'un tlporteur situ  telle position
+     * Obtient le numéro de version du niveau chargé, qui change à chaque
+     * chargement
+     */
+    public int getVersion()
+    {
+	return version;
+    }
+
+    /**
+     * Obtient le champ de directions partagé par les fantômes
+     */
+    public FlowField getFlowField()
+    {
+	return flowField;
+    }
+
+    /**
+     * Obtient la position d'arrivée d'un téléporteur situé à telle position
      */
     public Position getTeleporter(Position pos)
     {
 	if (isBoxTeleporter(pos))
-	    return teleporters[board[pos.y][pos.x] - BOX_TELEPORTERS];
+	    return teleporters[board.get(pos.x, pos.y) - BOX_TELEPORTERS];
 	return null;
     }
 
     /**
-     * Obtient la position initiale de Pacman (false) ou des fantmes (true)
+     * Obtient la position initiale de Pacman (false) ou des fantômes (true) ;
+     * l'objet retourné n'est pas une copie et ne doit pas être modifié
      */
     public Position getInitialPosition(boolean character)
     {
-	return new Position(character ? ghostPos : pacmanPos);
+	return character ? ghostPos : pacmanPos;
     }
 
     /**
-     * Obtient la direction initiale de Pacman (false) ou des fantmes (true)
+     * Obtient la direction initiale de Pacman (false) ou des fantômes (true)
      */
     public int getInitialDir(boolean character)
     {
 	if (!character)
 	    return pacmanDir;
 
-	// La direction initiale correspond  la direction vers Pacman
+	// La direction initiale correspond à la direction vers Pacman
 	if (Math.abs(pacmanPos.x - ghostPos.x) >=
 	    Math.abs(pacmanPos.y - ghostPos.y))
 	    return pacmanPos.x < ghostPos.x ? 0 : 1;
@@ -388,130 +695,192 @@ class Board
     }
 
     /**
-     * Dessine toute la grille
+     * Obtient la largeur du niveau courant en cases
      */
-    public void paint(Graphics gc)
+    public int getWidth()
     {
-	Position pos = new Position();
+	return width;
+    }
 
-	for (int y = 0; y < HEIGHT; y++)
-	    for (int x = 0; x < WIDTH; x++) {
-		pos.setPosition(x, y);
-		drawBox(gc, pos);
-	    }
+    /**
+     * Obtient la hauteur du niveau courant en cases
+     */
+    public int getHeight()
+    {
+	return height;
     }
 
     /**
-     * Dessine une bordure de cases "mur" autour de la grille
+     * Place la vue pour qu'elle suive une image de la taille d'une case
+     * dessinée à la position indiquée (en pixels, relativement à la
+     * grille), sans sortir du niveau ; retourne true si la vue a bougé, la
+     * grille et les personnages devant alors être redessinés
      */
-    public void paintBorder(Graphics gc)
+    public boolean follow(final Position pos)
     {
-	Position pos = new Position();
+	// Image au centre de la vue
+	int x = pos.x - (VIEW_WIDTH - BOX_SIZE) / 2;
+	int y = pos.y - (VIEW_HEIGHT - BOX_SIZE) / 2;
 
-	// Haut et bas
-	for (int x = -1; x <= WIDTH; x++) {
-	    pos.setPosition(x, -1);
-	    drawBox(gc, pos);
-	    pos.setPosition(x, HEIGHT);
-	    drawBox(gc, pos);
-	}
+	// Vue limitée au niveau, ou en haut à gauche s'il est plus petit
+	x = Math.max(0, Math.min(x, width * BOX_SIZE - VIEW_WIDTH));
+	y = Math.max(0, Math.min(y, height * BOX_SIZE - VIEW_HEIGHT));
 
-	// Gauche et droite
-	for (int y = 0; y < HEIGHT; y++) {
-	    pos.setPosition(-1, y);
-	    drawBox(gc, pos);
-	    pos.setPosition(WIDTH, y);
-	    drawBox(gc, pos);
-	}
+	if (x == camera.x && y == camera.y)
+	    return false;
+	camera.setPosition(x, y);
+	return true;
     }
 
     /**
-     * Dessine une case
+     * Dessine toute la partie visible de la grille
      */
-    public void drawBox(Graphics gc, Position pos)
+    public void paint(Graphics gc)
     {
-	Image img;
-
-	// Slection de la bonne image en fonction des coordonnes
-	if (pos.x >= 0 && pos.x < WIDTH && pos.y >= 0 && pos.y < HEIGHT) {
-	    byte box;
+	validateMaze();
 
-	    switch ((box = board[pos.y][pos.x])) {
-	    case BOX_EMPTY:
-		img = background[0][1];
-		break;
-
-	    case BOX_GUM:
-		img = background[1][0];
-		break;
+	final int x = camera.x - mazeX * BOX_SIZE;
+	final int y = camera.y - mazeY * BOX_SIZE;
+	gc.drawImage(maze, LEFT, TOP, LEFT + VIEW_WIDTH, TOP + VIEW_HEIGHT,
+		     x, y, x + VIEW_WIDTH, y + VIEW_HEIGHT, component);
+    }
 
-	    case BOX_SUPERGUM:
-		img = background[1][1];
-		break;
+    /**
+     * Redessine entièrement l'image de la grille si elle n'est plus à jour
+     * ou si la vue a changé de case ; le coût ne dépend que de la taille
+     * de la vue
+     */
+    private void validateMaze()
+    {
+	final int boxX = camera.x / BOX_SIZE, boxY = camera.y / BOX_SIZE;
+
+	if (mazeValid && boxX == mazeX && boxY == mazeY)
+	    return;
+
+	mazeX = boxX;
+	mazeY = boxY;
+	for (int y = 0; y <= VIEW_HEIGHT / BOX_SIZE; y++)
+	    for (int x = 0; x <= VIEW_WIDTH / BOX_SIZE; x++)
+		mazeGc.drawImage(getBoxImage(mazeX + x, mazeY + y),
+				 x * BOX_SIZE, y * BOX_SIZE, component);
+	mazeValid = true;
+    }
 
-	    case BOX_GHOSTS:
-		img = background[1][2];
-		break;
+    /**
+     * Dessine une bordure de cases "mur" autour de la vue
+     */
+    public void paintBorder(Graphics gc)
+    {
+	final int right = LEFT + VIEW_WIDTH, bottom = TOP + VIEW_HEIGHT;
 
-	    default:
-		img = background[0][box >= BOX_WALL ? 0 : 2];
-	    }
-	} else
-	    img = background[0][0];
+	// Haut et bas
+	for (int x = LEFT - BOX_SIZE; x <= right; x += BOX_SIZE) {
+	    gc.drawImage(background[0][0], x, TOP - BOX_SIZE, component);
+	    gc.drawImage(background[0][0], x, bottom, component);
+	}
 
-	// Dessin de l'image
-	drawImage(gc, img, pos.x * BOX_SIZE, pos.y * BOX_SIZE);
+	// Gauche et droite
+	for (int y = TOP; y < bottom; y += BOX_SIZE) {
+	    gc.drawImage(background[0][0], LEFT - BOX_SIZE, y, component);
+	    gc.drawImage(background[0][0], right, y, component);
+	}
     }
 
     /**
-     * Dessine la ou les cases se trouvant sous un personnage
+     * Obtient l'image d'une case de la grille
      */
-    public void clearBoxes(Graphics gc, Character chr)
+    private Image getBoxImage(final int x, final int y)
     {
-	final Position pos = chr.getBoxPosition(), offset = chr.getBoxOffset();
-
-	// Case du milieu
-	drawBox(gc, pos);
+	// Les cases hors du niveau sont des murs
+	if (x < 0 || x >= width || y < 0 || y >= height)
+	    return background[0][0];
+
+	final byte box = board.get(x, y);
+
+	// Sélection de la bonne image en fonction du contenu de la case
+	switch (box) {
+	case BOX_EMPTY:
+	    final int  index = y * width + x;
+	    final long bit = 1L << index;
+	    if ((gums[index >>> 6] & bit) == 0)
+		return background[0][1];
+	    return background[1][(superGums[index >>> 6] & bit) == 0 ? 0 : 1];
+
+	case BOX_GHOSTS:
+	    return background[1][2];
+
+	default:
+	    return background[0][box >= BOX_WALL ? 0 : 2];
+	}
+    }
 
-	// Cases alentours
-	if (offset.x < 0) {
-	    drawBox(gc, new Position(pos.x - 1, pos.y));
-	    if (offset.y < 0) {
-		drawBox(gc, new Position(pos.x, pos.y - 1));
-		drawBox(gc, new Position(pos.x - 1, pos.y - 1));
-	    } else if (offset.y > 0) {
-		drawBox(gc, new Position(pos.x, pos.y + 1));
-		drawBox(gc, new Position(pos.x - 1, pos.y + 1));
-	    }
-	} else if (offset.x > 0) {
-	    drawBox(gc, new Position(pos.x + 1, pos.y));
-	    if (offset.y < 0) {
-		drawBox(gc, new Position(pos.x, pos.y - 1));
-		drawBox(gc, new Position(pos.x + 1, pos.y - 1));
-	    } else if (offset.y > 0) {
-		drawBox(gc, new Position(pos.x, pos.y + 1));
-		drawBox(gc, new Position(pos.x + 1, pos.y + 1));
-	    }
-	} else {
-	    if (offset.y < 0)
-		drawBox(gc, new Position(pos.x, pos.y - 1));
-	    else if (offset.y > 0)
-		drawBox(gc, new Position(pos.x, pos.y + 1));
+    /**
+     * Redessine le fond de la grille sous une image de la taille d'une case
+     * dessinée à la position indiquée (en pixels, relativement à la grille)
+     */
+    public void clearImage(final Graphics gc, final Position pos)
+    {
+	// Rectangle limité à la vue
+	final int left   = Math.max(pos.x, camera.x);
+	final int top    = Math.max(pos.y, camera.y);
+	final int right  = Math.min(pos.x + BOX_SIZE, camera.x + VIEW_WIDTH);
+	final int bottom = Math.min(pos.y + BOX_SIZE, camera.y + VIEW_HEIGHT);
+
+	if (left < right && top < bottom) {
+	    validateMaze();
+
+	    final int x = LEFT - camera.x, y = TOP - camera.y;
+	    final int mx = mazeX * BOX_SIZE, my = mazeY * BOX_SIZE;
+	    gc.drawImage(maze, left + x, top + y, right + x, bottom + y,
+			 left - mx, top - my, right - mx, bottom - my,
+			 component);
 	}
     }
 
     /**
-     * Dessine une image aux coordonnes relatives  la position de la grille
-     * (version avec coordonnes sous forme de deux entiers)
+     * Ajoute à une zone à rafraîchir une image de la taille d'une case
+     * dessinée à la position indiquée (en pixels, relativement à la grille)
+     */
+    public void addImage(final DirtyRegion region, final Position pos)
+    {
+	region.add(pos.x - camera.x + LEFT, pos.y - camera.y + TOP,
+		   BOX_SIZE, BOX_SIZE);
+    }
+
+    /**
+     * Dessine une image aux coordonnées relatives à la position de la grille
+     * (version avec coordonnées sous forme de deux entiers) ; la partie
+     * hors de la vue n'est pas dessinée
      */
     public void drawImage(Graphics gc, Image img, int x, int y)
     {
-	gc.drawImage(img, x + LEFT, y + TOP, component);
+	final int w = img.getWidth(component), h = img.getHeight(component);
+
+	// Coordonnées dans la fenêtre
+	x += LEFT - camera.x;
+	y += TOP - camera.y;
+
+	// Image entièrement visible
+	if (x >= LEFT && y >= TOP && x + w <= LEFT + VIEW_WIDTH &&
+	    y + h <= TOP + VIEW_HEIGHT) {
+	    gc.drawImage(img, x, y, component);
+	    return;
+	}
+
+	// Image partiellement visible : seule la partie dans la vue est
+	// recopiée
+	final int left   = Math.max(x, LEFT);
+	final int top    = Math.max(y, TOP);
+	final int right  = Math.min(x + w, LEFT + VIEW_WIDTH);
+	final int bottom = Math.min(y + h, TOP + VIEW_HEIGHT);
+	if (left < right && top < bottom)
+	    gc.drawImage(img, left, top, right, bottom, left - x, top - y,
+			 right - x, bottom - y, component);
     }
 
     /**
-     * Dessine une image aux coordonnes relatives  la position de la grille
-     * (version avec coordonnes sous forme d'objet Position)
+     * Dessine une image aux coordonnées relatives à la position de la grille
+     * (version avec coordonnées sous forme d'objet Position)
      */
     public void drawImage(Graphics gc, Image img, Position pos)
     {
@@ -519,25 +888,72 @@ class Board
     }
 
     /**
-     * Obtient le rectangle o se situe la grille
+     * Obtient le rectangle où se situe la vue de la grille ; un nouvel
+     * objet est créé à chaque appel, l'appelant doit donc le garder
      */
     public static Rectangle getRectangle()
     {
-	return new Rectangle(LEFT, TOP, WIDTH * BOX_SIZE, HEIGHT * BOX_SIZE);
+	return new Rectangle(LEFT, TOP, VIEW_WIDTH, VIEW_HEIGHT);
     }
 
     /**
-     * Mthode appele par la classe Pacman pour manger une pastille
+     * Méthode appelée par la classe Pacman pour manger une pastille ;
+     * retourne le type de la pastille mangée (BOX_GUM ou BOX_SUPERGUM) ou
+     * BOX_EMPTY s'il n'y en avait pas
      */
-    public void eatGum(Position pos)
+    public byte eatGum(Position pos)
     {
-	final byte box = board[pos.y][pos.x];
+	final int  index = pos.y * width + pos.x;
+	final long bit = 1L << index;
 
-	if (box == BOX_GUM || box == BOX_SUPERGUM) {
+	if ((gums[index >>> 6] & bit) != 0) {
+	    gums[index >>> 6] &= ~bit;
 	    gumCount--;
-	    game.ateGum(board[pos.y][pos.x] == BOX_SUPERGUM);
-	    board[pos.y][pos.x] = BOX_EMPTY;
+	    updateMaze(pos.x, pos.y);
+	    return (superGums[index >>> 6] & bit) == 0 ? BOX_GUM
+						       : BOX_SUPERGUM;
 	}
+
+	return BOX_EMPTY;
+    }
+
+    /**
+     * Permet de savoir si une case contient encore une pastille ; la case
+     * doit se trouver dans la grille
+     */
+    public boolean isGum(final int x, final int y)
+    {
+	final int index = y * width + x;
+	return (gums[index >>> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * Remet en place une pastille mangée (voir History)
+     */
+    public void restoreGum(final int x, final int y)
+    {
+	final int  index = y * width + x;
+	final long bit = 1L << index;
+
+	if ((gums[index >>> 6] & bit) == 0 &&
+	    (current.gums[index >>> 6] & bit) != 0) {
+	    gums[index >>> 6] |= bit;
+	    gumCount++;
+	    updateMaze(x, y);
+	}
+    }
+
+    /**
+     * Redessine une case dans l'image de la grille, si elle y figure
+     */
+    private void updateMaze(final int x, final int y)
+    {
+	final int mx = x - mazeX, my = y - mazeY;
+
+	if (mazeValid && mx >= 0 && my >= 0 &&
+	    mx <= VIEW_WIDTH / BOX_SIZE && my <= VIEW_HEIGHT / BOX_SIZE)
+	    mazeGc.drawImage(getBoxImage(x, y), mx * BOX_SIZE, my * BOX_SIZE,
+			     component);
     }
 
     /**
@@ -0,0 +1,305 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : BotController.java
+ *
+ * Description : La classe BotController pilote Pacman par programme, sans
+ *               joueur humain.
+ *
+ * Commentaire : Elle sert à l'analyse de l'équilibre des niveaux (voir
+ *               BalanceAnalyzer) et aux tests d'endurance : lancée seule, elle
+ *               enchaîne sans affichage des parties aussi vite que possible
+ *               pendant la durée de jeu indiquée, en vérifiant la cohérence de
+ *               la simulation à chaque tour.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import java.util.Arrays;
+
+/**
+ * La classe BotController, joueur piloté par programme : se dirige vers la
+ * pastille la plus proche (parcours en largeur de la grille) en évitant
+ * les cases occupées par les fantômes dangereux et leurs voisines. L'ordre
+ * dans lequel les directions sont essayées est tiré au hasard à chaque
+ * case, ce qui varie les parties même lorsque les fantômes n'ont aucun
+ * hasard.
+ */
+class BotController implements Controller
+{
+    // Tables du parcours, réutilisées d'une case à l'autre : file des
+    // cases (indices y * largeur + x), marque de la dernière visite et
+    // première direction prise pour atteindre chaque case
+    private int[]  queue = new int[0], visits = new int[0];
+    private byte[] firstDirs = new byte[0];
+    private int    visit = 0;
+
+    // Position de travail, pour obtenir la destination des téléporteurs
+    private final Position target = new Position();
+
+    // Touches choisies et position de Pacman en pixels au tour précédent
+    private int keys, pixelX, pixelY;
+
+    // Tirages de l'ordre des directions
+    private final GameRandom random = new GameRandom(0);
+
+    // Nombre de tours (trois minutes de jeu) sans vie perdue ni niveau
+    // gagné au bout duquel le test d'endurance abandonne une partie
+    private static final int MAX_QUIET_TICKS = 3 * 60 * 1000 / Game.DELAY;
+
+    /**
+     * Prépare une nouvelle partie ; les mêmes graines de partie et du
+     * joueur donnent les mêmes parties
+     */
+    public void reset(final long seed)
+    {
+	random.setSeed(seed);
+	pixelX = pixelY = -1;
+	keys  = 0;
+    }
+
+    /**
+     * Choisit les touches à transmettre à la simulation pour ce tour ;
+     * la direction n'est recalculée qu'au centre des cases, où Pacman
+     * peut tourner, ou lorsqu'il est bloqué contre un mur
+     */
+    public int getKeys(final Simulation simulation)
+    {
+	final Board    board = simulation.getBoard();
+	final Pacman   pacman = simulation.getPacman();
+	final Position pixel = pacman.getPosition();
+	final Position offset = pacman.getBoxOffset();
+	final boolean  moved = pixel.x != pixelX || pixel.y != pixelY;
+	pixelX = pixel.x;
+	pixelY = pixel.y;
+	if (moved && (offset.x != 0 || offset.y != 0) && keys != 0)
+	    return keys;
+
+	final Position pos = pacman.getBoxPosition();
+
+	final int width = board.getWidth(), height = board.getHeight();
+	final int cells = width * height;
+	if (queue.length != cells) {
+	    queue     = new int[cells];
+	    visits    = new int[cells];
+	    firstDirs = new byte[cells];
+	    visit     = 0;
+	}
+
+	// Les cases interdites sont marquées comme déjà visitées
+	if (++visit == 0) {
+	    Arrays.fill(visits, 0);
+	    visit = 1;
+	}
+	for (int i = 0; i < Simulation.MAX_NB_GHOSTS; i++) {
+	    final Ghost ghost = simulation.getGhost(i);
+	    if (ghost.isDead() || ghost.isAfraid())
+		continue;
+
+	    final Position gpos = ghost.getBoxPosition();
+	    forbid(gpos.x, gpos.y, width, height);
+	    for (int dir = 0; dir < 4; dir++)
+		forbid(gpos.x + Board.EXIT_X[dir],
+		       gpos.y + Board.EXIT_Y[dir], width, height);
+	}
+
+	// Parcours en largeur depuis la case de Pacman
+	final int first = random.nextInt(4);
+	final int start = pos.y * width + pos.x;
+	int head = 0, tail = 0, fallback = -1;
+	visits[start] = visit;
+	queue[tail++] = start;
+	while (head < tail) {
+	    final int cell = queue[head++];
+	    final int x = cell % width, y = cell / width;
+
+	    if (cell != start && board.isGum(x, y)) {
+		keys = 1 << firstDirs[cell];
+		return keys;
+	    }
+
+	    // Un téléporteur mène directement à sa destination
+	    target.setPosition(x, y);
+	    if (cell != start && board.teleport(target)) {
+		final int next = target.y * width + target.x;
+		if (visits[next] != visit) {
+		    visits[next] = visit;
+		    firstDirs[next] = firstDirs[cell];
+		    queue[tail++] = next;
+		}
+	    }
+
+	    final int exits = board.getExits(x, y);
+	    for (int i = 0; i < 4; i++) {
+		final int dir = (first + i) & 3;
+		if ((exits & 1 << dir) == 0)
+		    continue;
+		final int next = cell + Board.EXIT_X[dir] +
+		    Board.EXIT_Y[dir] * width;
+		if (visits[next] == visit)
+		    continue;
+		visits[next] = visit;
+		firstDirs[next] = cell == start ? (byte) dir
+						: firstDirs[cell];
+		if (fallback < 0)
+		    fallback = firstDirs[next];
+		queue[tail++] = next;
+	    }
+	}
+
+	// Aucune pastille accessible : prend la première direction libre
+	// s'il y en a une, sinon garde sa direction
+	if (fallback >= 0)
+	    keys = 1 << fallback;
+	else if (keys == 0)
+	    keys = 1;
+	return keys;
+    }
+
+    /**
+     * Interdit une case au parcours, si elle est dans la grille
+     */
+    private void forbid(final int x, final int y, final int width,
+			final int height)
+    {
+	if (x >= 0 && x < width && y >= 0 && y < height)
+	    visits[y * width + x] = visit;
+    }
+
+    /**
+     * Vérifie la cohérence de la simulation après un tour : nombre de
+     * pastilles positif et personnages vivants dans la grille, hors des
+     * murs
+     */
+    private static void check(final Simulation simulation, final long tick)
+    {
+	final Board board = simulation.getBoard();
+	String error = null;
+
+	if (board.getGumCount() < 0)
+	    error = "nombre de pastilles négatif";
+	else if (!isValid(board, simulation.getPacman()))
+	    error = "Pacman hors de la grille ou dans un mur";
+	else
+	    for (int i = 0; i < Simulation.MAX_NB_GHOSTS; i++)
+		if (!simulation.getGhost(i).isDead() &&
+		    !isValid(board, simulation.getGhost(i)))
+		    error = "fantôme " + i + " hors de la grille ou dans " +
+			"un mur";
+
+	if (error != null)
+	    throw new IllegalStateException("Tour " + tick + ", niveau " +
+					    board.getLevel() + " : " +
+					    error);
+    }
+
+    /**
+     * Permet de savoir si un personnage est sur une case de la grille qui
+     * n'est pas un mur
+     */
+    private static boolean isValid(final Board board, final Character chr)
+    {
+	final Position pos = chr.getBoxPosition();
+
+	return pos.x >= 0 && pos.x < board.getWidth() && pos.y >= 0 &&
+	    pos.y < board.getHeight() && !board.isBoxWall(pos.x, pos.y);
+    }
+
+    /**
+     * Test d'endurance : java BotController [heures [difficulté]] enchaîne
+     * sans affichage des parties complètes (niveaux et vies comme dans le
+     * jeu) jusqu'à avoir joué la durée de jeu indiquée, en vérifiant la
+     * simulation à chaque tour ; une partie bloquée (aucune vie perdue ni
+     * niveau gagné pendant trois minutes de jeu) est abandonnée
+     */
+    public static void main(final String argv[])
+    {
+	double hours = 1;
+	int    difficulty = 1;
+	try {
+	    if (argv.length > 0)
+		hours = Double.parseDouble(argv[0]);
+	    if (argv.length > 1)
+		difficulty = Integer.parseInt(argv[1]);
+	} catch (NumberFormatException e) {
+	    hours = -1;
+	}
+	if (argv.length > 2 || hours <= 0 || difficulty < 0 ||
+	    difficulty >= HomeScreen.CHOICES.length) {
+	    System.err.println("Utilisation : java BotController " +
+			       "[heures [difficulté]]");
+	    System.exit(1);
+	}
+
+	final Board         board = new Board();
+	board.loadLevels();
+	final Simulation    simulation = new Simulation(board);
+	final BotController bot = new BotController();
+	simulation.setController(bot);
+	simulation.setDifficulty(difficulty);
+
+	final long total = (long) (hours * 3600 * 1000 / Game.DELAY);
+	final long start = System.nanoTime();
+	long       tick = 0;
+	int        games = 0, levels = 0, stuck = 0;
+	while (tick < total) {
+	    // Nouvelle partie
+	    simulation.setSeed(games);
+	    bot.reset(~games);
+	    simulation.resetGame();
+	    simulation.nextLevel();
+	    games++;
+
+	    for (int quiet = 0; tick < total; ) {
+		final int events = simulation.step();
+		check(simulation, ++tick);
+
+		if ((events & (Simulation.EVENT_WON |
+			       Simulation.EVENT_EATEN)) == 0) {
+		    if (++quiet < MAX_QUIET_TICKS)
+			continue;
+		    stuck++;
+		    break;
+		}
+		quiet = 0;
+		if ((events & Simulation.EVENT_WON) != 0)
+		    levels++;
+		if (!simulation.endLevel())
+		    break;
+	    }
+	}
+
+	final long time = (System.nanoTime() - start) / 1000000;
+	System.out.println(tick + " tours (" + tick * Game.DELAY / 60000 +
+			   " minutes de jeu) en " + time + " ms, soit " +
+			   tick * 1000 / Math.max(time, 1) +
+			   " tours par seconde ; " + games + " partie(s), " +
+			   levels + " niveau(x) gagné(s), " + stuck +
+			   " partie(s) bloquée(s)");
+    }
+}
+
+// Fin du fichier
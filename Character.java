@@ -1,35 +1,35 @@
 /*
  * ---------------------------------------------------------------------------
  *
- * Facman -- Un clne de Pacman en Java
+ * Facman -- Un clône de Pacman en Java
  * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
  *
  * ---------------------------------------------------------------------------
  *
  * Fichier     : Character.java
  *
- * Description : La classe dont drivent Pacman et Ghost. Elle sert  dfnir
- *               les mthodes qu'elles devront implmenter et dfinit aussi
- *               des mthodes communes aux deux classes.
+ * Description : La classe dont dérivent Pacman et Ghost. Elle sert à défénir
+ *               les méthodes qu'elles devront implémenter et définit aussi
+ *               des méthodes communes aux deux classes.
  *
- * Commentaire : C'est ici que sont codes les fonctions permettant de tester
+ * Commentaire : C'est ici que sont codées les fonctions permettant de tester
  *               et d'effectuer les mouvements des personnages.
  *
  * ---------------------------------------------------------------------------
  *
  * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
- * modifier conformment aux dispositions de la Licence Publique Gnrale GNU,
- * telle que publie par la Free Software Foundation ; version 2 de la
- * licence, ou encore ( votre convenance) toute version ultrieure.
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
  *
- * Ce programme est distribu dans l'espoir qu'il sera utile, mais SANS AUCUNE
- * GARANTIE ; sans mme la garantie implicite de COMMERCIALISATION ou
- * D'ADAPTATION  UN OBJET PARTICULIER. Pour plus de dtail, voir la Licence
- * Publique Gnrale GNU.
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
  *
- * Vous devez avoir reu un exemplaire de la Licence Publique Gnrale GNU en
- * mme temps que ce programme ; si ce n'est pas le cas, crivez  la Free
- * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, tats-Unis.
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
  *
  * ---------------------------------------------------------------------------
  */
@@ -40,8 +40,8 @@ import java.awt.Graphics;
 
 /**
  * La classe Character, classe de base pour les classes Pacman et Ghost,
- * indiquant les mthodes abstraites  dfinir et dclarant quelques mthodes
- * utiles  ces sous-classes
+ * indiquant les méthodes abstraites à définir et déclarant quelques méthodes
+ * utiles à ces sous-classes
  */
 abstract class Character
 {
@@ -52,15 +52,41 @@ abstract class Character
     protected static final String[] DIRS = {"left", "right", "up", "down"};
     protected              Position[] moves;
 
-    // Variables relatives  la position
+    // Sorties de la case courante (voir Board.getExits()) nécessaires pour
+    // pouvoir changer de case dans chaque direction, suivant que l'on est
+    // aligné sur la case, décalé vers la gauche ou le haut, ou décalé vers la
+    // droite ou le bas
+    private static final int[][] NEEDED_EXITS = {
+	{Board.EXIT_LEFT, Board.EXIT_LEFT | Board.EXIT_UP_LEFT,
+	 Board.EXIT_LEFT | Board.EXIT_DOWN_LEFT},
+	{Board.EXIT_RIGHT, Board.EXIT_RIGHT | Board.EXIT_UP_RIGHT,
+	 Board.EXIT_RIGHT | Board.EXIT_DOWN_RIGHT},
+	{Board.EXIT_UP, Board.EXIT_UP | Board.EXIT_UP_LEFT,
+	 Board.EXIT_UP | Board.EXIT_UP_RIGHT},
+	{Board.EXIT_DOWN, Board.EXIT_DOWN | Board.EXIT_DOWN_LEFT,
+	 Board.EXIT_DOWN | Board.EXIT_DOWN_RIGHT}
+    };
+
+    // Variables relatives à la position
     protected final int boxSize;
     protected final Position pos    = new Position();
     protected final Position boxPos = new Position(), offset = new Position();
     protected int lastDir;
 
+    // Position au tour précédent et position d'affichage, interpolée entre
+    // celle-ci et la position courante (voir interpolate()) ; ALPHA_ONE
+    // correspond à la position courante
+    static    final int      ALPHA_ONE = 256;
+    protected final Position lastPos = new Position();
+    protected final Position drawPos = new Position();
+
     // Plateau de jeu
     protected final Board board;
 
+    // Nombre d'entiers nécessaires pour enregistrer l'état du personnage
+    // (voir saveState())
+    static final int STATE_SIZE = 7;
+
     /**
      * Constructeur de la classe Character
      */
@@ -73,7 +99,7 @@ abstract class Character
     }
 
     /**
-     * Constructeur de la classe Character avec le dplacement par dfaut
+     * Constructeur de la classe Character avec le déplacement par défaut
      */
     public Character(final Board board)
     {
@@ -89,6 +115,8 @@ abstract class Character
 	boxPos.setPosition(board.getInitialPosition(character));
 	pos.setPosition(boxPos.x * boxSize, boxPos.y * boxSize);
 	offset.setPosition(0, 0);
+	lastPos.setPosition(pos);
+	drawPos.setPosition(pos);
     }
 
     /**
@@ -99,6 +127,84 @@ abstract class Character
  	return pos;
     }
 
+    /**
+     * Retourne la position d'affichage en pixels
+     */
+    public Position getDrawPosition()
+    {
+	return drawPos;
+    }
+
+    /**
+     * Mémorise la position courante avant un tour de jeu
+     */
+    public void savePosition()
+    {
+	lastPos.setPosition(pos);
+    }
+
+    /**
+     * Calcule la position d'affichage entre la position du tour précédent
+     * (alpha = 0) et la position courante (alpha = ALPHA_ONE) ; une
+     * téléportation n'est pas interpolée
+     */
+    public void interpolate(final int alpha)
+    {
+	final int dx = pos.x - lastPos.x, dy = pos.y - lastPos.y;
+
+	if (Math.abs(dx) > boxSize || Math.abs(dy) > boxSize)
+	    drawPos.setPosition(pos);
+	else
+	    drawPos.setPosition(lastPos.x + dx * alpha / ALPHA_ONE,
+				lastPos.y + dy * alpha / ALPHA_ONE);
+    }
+
+    /**
+     * Enregistre l'état du personnage dans un tableau à partir de l'indice
+     * indiqué ; retourne l'indice suivant
+     */
+    int saveState(final int[] state, int index)
+    {
+	state[index++] = pos.x;
+	state[index++] = pos.y;
+	state[index++] = boxPos.x;
+	state[index++] = boxPos.y;
+	state[index++] = offset.x;
+	state[index++] = offset.y;
+	state[index++] = lastDir;
+	return index;
+    }
+
+    /**
+     * Restaure un état enregistré par saveState() ; la position affichée
+     * devient la position restaurée. Retourne l'indice suivant.
+     */
+    int restoreState(final int[] state, int index)
+    {
+	pos.setPosition(state[index], state[index + 1]);
+	boxPos.setPosition(state[index + 2], state[index + 3]);
+	offset.setPosition(state[index + 4], state[index + 5]);
+	lastDir = state[index + 6];
+	lastPos.setPosition(pos);
+	drawPos.setPosition(pos);
+	return index + STATE_SIZE;
+    }
+
+    /**
+     * Restaure l'état d'un tour joué par le serveur (voir GameClient) :
+     * contrairement à restoreState(), la position courante devient celle
+     * du tour précédent, pour l'affichage interpolé. Retourne l'indice
+     * suivant.
+     */
+    int receiveState(final int[] state, final int index)
+    {
+	final int x = pos.x, y = pos.y;
+	final int next = restoreState(state, index);
+
+	lastPos.setPosition(x, y);
+	return next;
+    }
+
     /**
      * Retourne la position en cases
      */
@@ -108,7 +214,7 @@ abstract class Character
     }
 
     /**
-     * Retourne la position en tant que dcalage par rapport  une case
+     * Retourne la position en tant que décalage par rapport à une case
      */
     public Position getBoxOffset()
     {
@@ -116,13 +222,13 @@ abstract class Character
     }
 
     /**
-     * Calcule la direction oppose  celle passe en paramtre
+     * Calcule la direction opposée à celle passée en paramètre
      */
     protected static int oppositeDir(final int dir)
     {
-	// Teste la validit de la direction
+	// Teste la validité de la direction
 	if (dir >= 0 && dir < NB_DIRS)
-	    // Direction oppose
+	    // Direction opposée
 	    return (NB_DIRS + 1 - dir) % NB_DIRS;
 
 	// Direction invalide
@@ -130,8 +236,8 @@ abstract class Character
     }
 
     /**
-     * Teste si un mouvement dans la direction donne est possible
-     * (c'est--dire si un mur ne bloque pas le passage)
+     * Teste si un mouvement dans la direction donnée est possible
+     * (c'est-à-dire si un mur ne bloque pas le passage)
      */
     protected boolean canMove(final int dir)
     {
@@ -139,58 +245,40 @@ abstract class Character
 	if (dir < 0 || dir >= NB_DIRS)
 	    return false;
 
-	// Variables servant  calculer la nouvelle position
-	final Position newOffset = new Position(offset);
-	final Position newBoxPos = new Position(boxPos);
-	newOffset.move(moves[dir]);
-
-	// Effectue un changement de case si besoin est
-	if (dir == LEFT && newOffset.x < 0)
-	    newBoxPos.x--;
-	else if (dir == RIGHT && newOffset.x > 0)
-	    newBoxPos.x++;
-	else if (dir == UP && newOffset.y < 0)
-	    newBoxPos.y--;
-	else if (dir == DOWN && newOffset.y > 0)
-	    newBoxPos.y++;
+	// Variables servant à calculer la nouvelle position (des entiers
+	// plutôt que des objets Position, pour ne rien allouer)
+	final int newOffsetX = offset.x + moves[dir].x;
+	final int newOffsetY = offset.y + moves[dir].y;
+	final int side;
+
+	// Teste si le mouvement fait changer de case ; si c'est le cas, note
+	// de quel côté on n'est éventuellement pas aligné
+	if (dir == LEFT && newOffsetX < 0 || dir == RIGHT && newOffsetX > 0)
+	    side = newOffsetY < 0 ? 1 : newOffsetY > 0 ? 2 : 0;
+	else if (dir == UP && newOffsetY < 0 || dir == DOWN && newOffsetY > 0)
+	    side = newOffsetX < 0 ? 1 : newOffsetX > 0 ? 2 : 0;
 	else
 	    return true;
 
-	// Teste si la case vise est un mur
-	if (board.isBoxWall(newBoxPos))
-	    return false;
-
-	// Si on n'est pas align sur la prochaine case, fait des tests
-	// supplmentaires
-	if (dir == LEFT || dir == RIGHT) {
-	    if (newOffset.y < 0)
-		newBoxPos.y--;
-	    else if (newOffset.y > 0)
-		newBoxPos.y++;
-	} else {
-	    if (newOffset.x < 0)
-		newBoxPos.x--;
-	    else if (newOffset.x > 0)
-		newBoxPos.x++;
-	}
-
-	// Teste si la case adjacente (si non alignement) est un mur
-	return !board.isBoxWall(newBoxPos);
+	// Teste si la case visée et la case adjacente (si non alignement) ne
+	// sont pas des murs
+	final int needed = NEEDED_EXITS[dir][side];
+	return (board.getExits(boxPos.x, boxPos.y) & needed) == needed;
     }
 
     /**
-     * Met  jour les variables relatives  la position pour effectuer un
+     * Met à jour les variables relatives à la position pour effectuer un
      * mouvement
      */
     protected void move(final int dir)
     {
 	// Si la direction est valide
 	if (dir >= 0 && dir < NB_DIRS) {
-	    // Mise  jour des variables de position
+	    // Mise à jour des variables de position
 	    offset.move(moves[dir]);
 	    pos.move(moves[dir]);
 
-	    // Change de case si le dcalage devient assez grand
+	    // Change de case si le décalage devient assez grand
 	    if (offset.x <= -boxSize / 2) {
 		boxPos.x--;
 		offset.x += boxSize;
@@ -206,16 +294,13 @@ abstract class Character
 		offset.y -= boxSize;
 	    }
 
-	    // Sauvegarde de la dernire direction prise
+	    // Sauvegarde de la dernière direction prise
 	    lastDir = dir;
 	}
 
-	Position teleporter;
-	if (offset.x == 0 && offset.y == 0 &&
-	    (teleporter = board.getTeleporter(boxPos)) != null) {
-	    boxPos.setPosition(teleporter);
+	// Téléportation si on est au centre d'un téléporteur
+	if (offset.x == 0 && offset.y == 0 && board.teleport(boxPos))
 	    pos.setPosition(boxPos.x * boxSize, boxPos.y * boxSize);
-	}
     }
 
     public boolean collides(final Character chr)
@@ -226,8 +311,11 @@ abstract class Character
 	    Math.abs(pos.y - pos2.y) <= boxSize / 2;
     }
 
-    // Mthodes abstraites
+    // Méthodes abstraites : draw() passe à l'image suivante de l'animation
+    // puis dessine le personnage, paint() le dessine seulement, à la
+    // position d'affichage
     abstract public void draw(final Graphics gc);
+    abstract public void paint(final Graphics gc);
     abstract public void doMove();
 }
 
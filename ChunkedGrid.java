@@ -0,0 +1,123 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : ChunkedGrid.java
+ *
+ * Description : La classe ChunkedGrid stocke une grille de cases par blocs
+ *               carrés, créés seulement quand ils contiennent autre chose que
+ *               des murs.
+ *
+ * Commentaire : Les blocs sont hors du tas Java si la propriété
+ *               facman.offheap vaut true.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import java.nio.ByteBuffer;
+
+/**
+ * La classe ChunkedGrid, grille de cases creuse
+ */
+class ChunkedGrid
+{
+    // Taille des blocs (côté de 2^CHUNK_BITS cases)
+    private static final int CHUNK_BITS = 5, CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int CHUNK_AREA = CHUNK_SIZE * CHUNK_SIZE;
+
+    // Bloc ne contenant que des murs, partagé par toutes les grilles
+    private static final ByteBuffer WALLS;
+    static {
+	final ByteBuffer walls = ByteBuffer.allocate(CHUNK_AREA);
+	while (walls.hasRemaining())
+	    walls.put(Board.BOX_WALL);
+	WALLS = walls.asReadOnlyBuffer();
+    }
+
+    // Blocs hors du tas Java (ByteBuffer directs)
+    private static final boolean DIRECT = Boolean.getBoolean("facman.offheap");
+
+    // Dimensions en cases et en blocs
+    private final int width, height, chunksX;
+
+    // Blocs, ligne par ligne ; ceux qui n'ont pas été créés sont le bloc
+    // de murs partagé
+    private final ByteBuffer[] chunks;
+
+    /**
+     * Constructeur : grille ne contenant que des murs
+     */
+    public ChunkedGrid(final int width, final int height)
+    {
+	this.width  = width;
+	this.height = height;
+	chunksX = (width + CHUNK_MASK) >> CHUNK_BITS;
+	chunks  = new ByteBuffer[chunksX * ((height + CHUNK_MASK) >>
+					    CHUNK_BITS)];
+	for (int i = 0; i < chunks.length; i++)
+	    chunks[i] = WALLS;
+    }
+
+    /**
+     * Obtient le contenu d'une case ; les cases hors de la grille sont des
+     * murs
+     */
+    public byte get(final int x, final int y)
+    {
+	if (x < 0 || x >= width || y < 0 || y >= height)
+	    return Board.BOX_WALL;
+	return chunks[(y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS)].
+	    get(((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK));
+    }
+
+    /**
+     * Modifie le contenu d'une case de la grille ; le bloc n'est créé que
+     * si la valeur change
+     */
+    public void set(final int x, final int y, final byte value)
+    {
+	final int chunk  = (y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS);
+	final int offset = ((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK);
+
+	if (chunks[chunk].get(offset) == value)
+	    return;
+
+	// Création du bloc, rempli de murs
+	if (chunks[chunk] == WALLS) {
+	    final ByteBuffer copy = DIRECT ?
+		ByteBuffer.allocateDirect(CHUNK_AREA) :
+		ByteBuffer.allocate(CHUNK_AREA);
+	    final ByteBuffer source = WALLS.duplicate();
+	    source.clear();
+	    copy.put(source);
+	    chunks[chunk] = copy;
+	}
+
+	chunks[chunk].put(offset, value);
+    }
+}
+
+// Fin du fichier
@@ -0,0 +1,133 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : ChunkedTable.java
+ *
+ * Description : La classe ChunkedTable est une table creuse d'entiers indexée
+ *               par case, découpée en blocs créés à la demande.
+ *
+ * Commentaire : Les blocs ne contenant que la valeur par défaut sont tous
+ *               représentés par un seul bloc partagé.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+// Imports
+import java.util.Arrays;
+
+/**
+ * La classe ChunkedTable, table creuse de valeurs par case : les indices
+ * sont ceux de Board.cell(), numérotés ligne par ligne, si bien qu'un bloc
+ * est un morceau de ligne et que le décalage d'une case à sa voisine reste
+ * constant
+ */
+class ChunkedTable
+{
+    // Taille des blocs (2^BLOCK_BITS cases)
+    private static final int BLOCK_BITS = 8, BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    // Nombre de cases et valeur par défaut
+    private final int size, fill;
+
+    // Blocs ; empty, rempli de la valeur par défaut, n'est jamais modifié
+    // et représente tous les blocs qui n'ont pas été créés
+    private final int[]   empty = new int[BLOCK_SIZE];
+    private final int[][] blocks;
+
+    // Blocs libérés par clear(), réutilisés avant d'en allouer de nouveaux
+    private final int[][] spare;
+    private       int     spareCount = 0;
+
+    /**
+     * Constructeur : table de size cases contenant toutes la valeur fill
+     */
+    public ChunkedTable(final int size, final int fill)
+    {
+	this.size = size;
+	this.fill = fill;
+	Arrays.fill(empty, fill);
+	blocks = new int[(size + BLOCK_MASK) >> BLOCK_BITS][];
+	spare  = new int[blocks.length][];
+	Arrays.fill(blocks, empty);
+    }
+
+    /**
+     * Obtient le nombre de cases
+     */
+    public int size()
+    {
+	return size;
+    }
+
+    /**
+     * Obtient la valeur d'une case
+     */
+    public int get(final int cell)
+    {
+	return blocks[cell >> BLOCK_BITS][cell & BLOCK_MASK];
+    }
+
+    /**
+     * Modifie la valeur d'une case ; le bloc n'est créé que si la valeur
+     * n'est pas celle par défaut
+     */
+    public void set(final int cell, final int value)
+    {
+	int[] block = blocks[cell >> BLOCK_BITS];
+
+	if (block == empty) {
+	    if (value == fill)
+		return;
+
+	    // Réutilise un bloc libéré, ou en alloue un nouveau
+	    if (spareCount > 0) {
+		block = spare[--spareCount];
+		spare[spareCount] = null;
+		Arrays.fill(block, fill);
+	    } else
+		block = empty.clone();
+	    blocks[cell >> BLOCK_BITS] = block;
+	}
+
+	block[cell & BLOCK_MASK] = value;
+    }
+
+    /**
+     * Remet toutes les cases à la valeur par défaut ; les blocs créés sont
+     * gardés pour être réutilisés
+     */
+    public void clear()
+    {
+	for (int i = 0; i < blocks.length; i++)
+	    if (blocks[i] != empty) {
+		spare[spareCount++] = blocks[i];
+		blocks[i] = empty;
+	    }
+    }
+}
+
+// Fin du fichier
@@ -0,0 +1,50 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : Controller.java
+ *
+ * Description : L'interface Controller décrit ce qui pilote Pacman : le
+ *               clavier, un enregistrement rejoué ou un programme.
+ *
+ * Commentaire : La simulation interroge son contrôleur une fois par tour (voir
+ *               Simulation.step()), juste avant de déplacer les personnages ;
+ *               rien ne dépend donc d'événements arrivant entre deux tours.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+/**
+ * L'interface Controller, source des touches de direction de Pacman
+ */
+interface Controller
+{
+    // Masque des touches de direction enfoncées pour le tour à jouer (le
+    // bit n correspond à la direction n) ; la simulation peut être
+    // consultée mais pas modifiée
+    public int getKeys(Simulation simulation);
+}
+
+// Fin du fichier
@@ -0,0 +1,126 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : DirtyRegion.java
+ *
+ * Description : La classe DirtyRegion accumule les zones de l'écran modifiées
+ *               pendant un tour de jeu afin de ne demander au composant que le
+ *               rafraîchissement de leur union.
+ *
+ * Commentaire : Seuls les personnages, les textes du bandeau et les images de
+ *               texte changent d'un tour à l'autre : recopier tout le tampon
+ *               double à chaque tour coûte bien plus cher sur les machines
+ *               lentes.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import java.awt.Component;
+import java.awt.Rectangle;
+
+/**
+ * La classe DirtyRegion, rectangle englobant des zones à rafraîchir
+ */
+class DirtyRegion
+{
+    // Bornes de la zone (maxX et maxY exclus) ; vide si minX >= maxX
+    private int minX, minY, maxX, maxY;
+
+    // Indique que tout le composant doit être rafraîchi
+    private boolean all;
+
+    /**
+     * Constructeur
+     */
+    public DirtyRegion()
+    {
+	clear();
+    }
+
+    /**
+     * Vide la zone
+     */
+    public void clear()
+    {
+	minX = minY = Integer.MAX_VALUE;
+	maxX = maxY = Integer.MIN_VALUE;
+	all  = false;
+    }
+
+    /**
+     * Ajoute un rectangle à la zone
+     */
+    public void add(final int x, final int y, final int width,
+		    final int height)
+    {
+	if (x < minX)
+	    minX = x;
+	if (y < minY)
+	    minY = y;
+	if (x + width > maxX)
+	    maxX = x + width;
+	if (y + height > maxY)
+	    maxY = y + height;
+    }
+
+    /**
+     * Ajoute un rectangle à la zone (version avec un objet Rectangle)
+     */
+    public void add(final Rectangle rect)
+    {
+	add(rect.x, rect.y, rect.width, rect.height);
+    }
+
+    /**
+     * Indique que tout le composant doit être rafraîchi
+     */
+    public void addAll()
+    {
+	all = true;
+    }
+
+    /**
+     * Indique si la zone est vide
+     */
+    public boolean isEmpty()
+    {
+	return !all && (minX >= maxX || minY >= maxY);
+    }
+
+    /**
+     * Demande au composant de rafraîchir la zone, puis la vide
+     */
+    public void flush(final Component component)
+    {
+	if (all)
+	    component.repaint();
+	else if (!isEmpty())
+	    component.repaint(minX, minY, maxX - minX, maxY - minY);
+	clear();
+    }
+}
+
+// Fin du fichier
@@ -1,40 +1,42 @@
 /*
  * ---------------------------------------------------------------------------
  *
- * Facman -- Un clne de Pacman en Java
+ * Facman -- Un clône de Pacman en Java
  * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
  *
  * ---------------------------------------------------------------------------
  *
  * Fichier     : Facman.java
  *
- * Description : La classe Facman est la classe principale : elle drive de la
+ * Description : La classe Facman est la classe principale : elle dérive de la
  *               classe Applet et utilise les autres classes du projet.
  *
- * Commentaire : Cette classe ne fait presque rien  part instancier les
- *               autres classes et utiliser leurs mthodes.
+ * Commentaire : Cette classe ne fait presque rien à part instancier les
+ *               autres classes et utiliser leurs méthodes.
  *
  * ---------------------------------------------------------------------------
  *
  * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
- * modifier conformment aux dispositions de la Licence Publique Gnrale GNU,
- * telle que publie par la Free Software Foundation ; version 2 de la
- * licence, ou encore ( votre convenance) toute version ultrieure.
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
  *
- * Ce programme est distribu dans l'espoir qu'il sera utile, mais SANS AUCUNE
- * GARANTIE ; sans mme la garantie implicite de COMMERCIALISATION ou
- * D'ADAPTATION  UN OBJET PARTICULIER. Pour plus de dtail, voir la Licence
- * Publique Gnrale GNU.
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
  *
- * Vous devez avoir reu un exemplaire de la Licence Publique Gnrale GNU en
- * mme temps que ce programme ; si ce n'est pas le cas, crivez  la Free
- * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, tats-Unis.
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
  *
  * ---------------------------------------------------------------------------
  */
 
 
 // Imports
+import java.awt.BorderLayout;
+import java.awt.Canvas;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.Frame;
@@ -44,55 +46,89 @@ import java.awt.event.WindowEvent;
 import java.applet.Applet;
 
 /**
- * La classe Facman est la classe principale de l'applet, charge d'utiliser
+ * La classe Facman est la classe principale de l'applet, chargée d'utiliser
  * les autres classes et contenant quelques primitives de dessin
  */
 public class Facman extends Applet implements WindowListener
 {
-    // Variables utilises pour la gestion de la fentre quand Facman est
-    // excut en tant qu'application autonome
+    // Variables utilisées pour la gestion de la fenêtre quand Facman est
+    // exécuté en tant qu'application autonome
     private static final Dimension SIZE = new Dimension(640, 480);
     private              Frame frame = null;
 
-    // Image servant  implmenter un tampon double (double buffer)
+    // Image servant à implémenter un tampon double (double buffer)
     private Image db;
 
+    // Mode d'affichage actif (option -active) : le jeu est cadencé par une
+    // boucle de jeu et affiché dans une zone de dessin à tampons multiples
+    private boolean  active = false;
+    private Canvas   canvas = null;
+    private GameLoop loop   = null;
+
     /**
-     * Mthode appele lors de l'initialisation de l'applet ; on met ici tout
+     * Méthode appelée lors de l'initialisation de l'applet ; on met ici tout
      * ce qu'on ne peut pas faire dans un constructeur. Les objets sont aussi
-     * initialiss ici car ils utilisent une instance de Facman pour effectuer
-     * des oprations graphiques (chargement des images, dessin...)
+     * initialisés ici car ils utilisent une instance de Facman pour effectuer
+     * des opérations graphiques (chargement des images, dessin...)
      */
     public void init()
     {
 	// Autorise l'utilisation des touches de direction et de tabulation,
-	// normalement affectes au dplacement entre les contrles graphiques
+	// normalement affectées au déplacement entre les contrôles graphiques
 	setFocusable(true);
 	setFocusTraversalKeysEnabled(false);
 	requestFocus();
 
-	// Cration du tampon double
+	// Création du tampon double
 	db = frame != null ?
 	    frame.createImage(frame.getWidth(), frame.getHeight()) :
 	    createImage(getWidth(), getHeight());
 	final Graphics db_gc = db.getGraphics();
 
-	// Cration du chargeur d'images
+	// Création du chargeur d'images
 	final ImageLoader loader = frame != null ?
 	    (ImageLoader) new ApplicationImageLoader(frame) :
 	    (ImageLoader) new AppletImageLoader(this);
 
-	// Cration d'une instance de la classe HomeScreen
-	final HomeScreen home = new HomeScreen(db_gc, loader, this);
-
-	// Lancement de l'cran d'accueil
+	// Création de l'horloge ; en mode actif, une zone de dessin recouvre
+	// l'applet sans lui prendre le focus clavier
+	final GameClock clock;
+	if (active) {
+	    canvas = new Canvas() {
+		    public void update(final Graphics gc)
+		    {
+			paint(gc);
+		    }
+
+		    public void paint(final Graphics gc)
+		    {
+			gc.drawImage(db, 0, 0, this);
+		    }
+		};
+	    canvas.setFocusable(false);
+	    setLayout(new BorderLayout());
+	    add(canvas, BorderLayout.CENTER);
+	    validate();
+	    clock = loop = new GameLoop(canvas, db, Game.DELAY);
+	} else
+	    clock = new TimerClock(Game.DELAY);
+
+	// Chargement parallèle des images et des niveaux
+	final Startup startup = new Startup();
+	loader.setStartup(startup);
+
+	// Création d'une instance de la classe HomeScreen
+	final HomeScreen home = new HomeScreen(db_gc, loader, this, clock,
+					       startup);
+
+	// Lancement de l'écran d'accueil
 	home.init();
 	home.run();
     }
 
     /**
-     * Surcharge de la mthode update qui par dfaut effectue plus
-     * d'oprations : cela permet d'optimiser la vitesse de l'affichage
+     * Surcharge de la méthode update qui par défaut effectue plus
+     * d'opérations : cela permet d'optimiser la vitesse de l'affichage
      */
     public void update(final Graphics gc)
     {
@@ -110,30 +146,46 @@ public class Facman extends Applet implements WindowListener
     }
 
     /**
-     * Mthode appele lorsque Facman est excut en tant qu'application (en
-     * opposition  l'applet)
+     * Demande le redessin d'une partie de l'applet, ou de la zone de dessin
+     * qui la recouvre en mode actif
+     */
+    public void repaint(final long time, final int x, final int y,
+			final int width, final int height)
+    {
+	if (canvas != null)
+	    canvas.repaint(time, x, y, width, height);
+	else
+	    super.repaint(time, x, y, width, height);
+    }
+
+    /**
+     * Méthode appelée lorsque Facman est exécuté en tant qu'application (en
+     * opposition à l'applet) ; l'option -active active l'affichage actif
      */
     public static void main(final String argv[])
     {
-	// Cration de la fentre et de l'applet
+	// Création de la fenêtre et de l'applet
 	Frame frame = new Frame("Facman");
 	Facman applet = new Facman();
 	applet.setFrame(frame);
+	for (int i = 0; i < argv.length; i++)
+	    if (argv[i].equals("-active"))
+		applet.setActive(true);
 
-	// Dfinition des proprits de la fentre
+	// Définition des propriétés de la fenêtre
 	frame.add("Center", applet);
 	frame.pack();
 	frame.setResizable(false);
 	frame.addWindowListener(applet);
 
-	// Excution de l'applet
+	// Exécution de l'applet
 	applet.init();
 	applet.start();
 	frame.show();
     }
 
     /**
-     * Mthode publique servant  dfinit la fentre de l'application autonome
+     * Méthode publique servant à définit la fenêtre de l'application autonome
      */
     public void setFrame(final Frame frame)
     {
@@ -141,7 +193,15 @@ public class Facman extends Applet implements WindowListener
     }
 
     /**
-     * Mthode appele pour connatre la taille minimale de la fentre
+     * Méthode publique servant à choisir l'affichage actif, avant init()
+     */
+    public void setActive(final boolean active)
+    {
+	this.active = active;
+    }
+
+    /**
+     * Méthode appelée pour connaître la taille minimale de la fenêtre
      */
     public Dimension getMinimumSize()
     {
@@ -149,7 +209,7 @@ public class Facman extends Applet implements WindowListener
     }
 
     /**
-     * Mthode appele pour connatre la taille maximale de la fentre
+     * Méthode appelée pour connaître la taille maximale de la fenêtre
      */
     public Dimension getMaximumSize()
     {
@@ -157,7 +217,7 @@ public class Facman extends Applet implements WindowListener
     }
 
     /**
-     * Mthode appele pour connatre la taille prfre de la fentre
+     * Méthode appelée pour connaître la taille préférée de la fenêtre
      */
     public Dimension getPreferredSize()
     {
@@ -165,16 +225,20 @@ public class Facman extends Applet implements WindowListener
     }
 
     /**
-     * Mthode appele quand on tente de fermer la fentre
+     * Méthode appelée quand on tente de fermer la fenêtre
      */
     public void windowClosing(final WindowEvent e)
     {
+	// Affiche les statistiques de l'affichage actif
+	if (loop != null)
+	    System.out.println(loop.getStatistics());
+
 	// Termine l'application
 	System.exit(0);
     }
 
     /*
-     * Autres mthodes de l'interface WindowListener non implmentes
+     * Autres méthodes de l'interface WindowListener non implémentées
      */
     public void windowActivated(final WindowEvent e) {}
     public void windowClosed(final WindowEvent e) {}
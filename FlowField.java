@@ -0,0 +1,230 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : FlowField.java
+ *
+ * Description : La classe FlowField calcule, pour toutes les cases de la
+ *               grille, la direction à prendre pour rejoindre une case racine
+ *               (Pacman) par le plus court chemin, ainsi que la distance
+ *               correspondante.
+ *
+ * Commentaire : Le champ est partagé par tous les fantômes : il n'est
+ *               recalculé que lorsque Pacman change de case ou que le niveau
+ *               change. Le champ précédent est conservé, si bien qu'un retour
+ *               de Pacman sur sa case précédente ne coûte qu'un échange de
+ *               tableaux.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import java.util.Arrays;
+
+/**
+ * La classe FlowField, champ de directions vers une case racine partagé par
+ * les fantômes : c'est lui qui guide les fantômes du mode expert (voir
+ * Ghost), chacun n'y lisant qu'une case par décision. Il remplace la table
+ * des plus courts chemins entre toutes les paires de cases, calculée au
+ * chargement du niveau, qui occuperait le carré du nombre de cases sur les
+ * grilles de 1024 x 1024 cases désormais acceptées.
+ */
+class FlowField
+{
+    // Grille sur laquelle le champ est calculé
+    private final Board board;
+
+    // Champ courant et champ précédent : direction vers la racine et
+    // distance en cases de chaque case (-1 si la racine est inaccessible) ;
+    // dans un grand labyrinthe, une distance peut dépasser 32767. Les
+    // tables sont creuses : seules les cases atteintes occupent de la
+    // mémoire.
+    private ChunkedTable dirs          = new ChunkedTable(0, -1);
+    private ChunkedTable distances     = new ChunkedTable(0, -1);
+    private ChunkedTable lastDirs      = new ChunkedTable(0, -1);
+    private ChunkedTable lastDistances = new ChunkedTable(0, -1);
+
+    // Racine et version du niveau des deux champs (-1 : pas encore calculé)
+    private int root     = -1, version     = -1;
+    private int lastRoot = -1, lastVersion = -1;
+
+    // File utilisée pour le parcours en largeur, agrandie au besoin
+    private int[] queue = new int[16];
+
+    /**
+     * Constructeur
+     */
+    public FlowField(final Board board)
+    {
+	this.board = board;
+    }
+
+    /**
+     * Place la racine du champ sur une case, en ne recalculant le champ
+     * que si nécessaire
+     */
+    public void setRoot(final int x, final int y)
+    {
+	final int cell = board.cell(x, y), current = board.getVersion();
+
+	if (cell == root && version == current)
+	    return;
+
+	// Les tables sont agrandies ou réduites quand la taille du niveau
+	// change
+	final int cells = board.getCellCount();
+	if (dirs.size() != cells) {
+	    dirs          = new ChunkedTable(cells, -1);
+	    distances     = new ChunkedTable(cells, -1);
+	    lastDirs      = new ChunkedTable(cells, -1);
+	    lastDistances = new ChunkedTable(cells, -1);
+	    root = lastRoot = -1;
+	}
+
+	// Échange du champ courant et du champ précédent
+	final ChunkedTable tmpDirs      = dirs;
+	final ChunkedTable tmpDistances = distances;
+	dirs          = lastDirs;
+	distances     = lastDistances;
+	lastDirs      = tmpDirs;
+	lastDistances = tmpDistances;
+
+	final int tmpRoot = root, tmpVersion = version;
+	root        = lastRoot;
+	version     = lastVersion;
+	lastRoot    = tmpRoot;
+	lastVersion = tmpVersion;
+
+	// Le champ précédent ne correspond pas : il faut le recalculer
+	if (cell != root || version != current) {
+	    compute(cell);
+	    root    = cell;
+	    version = current;
+	}
+    }
+
+    /**
+     * Calcule le champ par un parcours en largeur depuis la racine, en
+     * remontant les déplacements possibles ; entrer dans un téléporteur
+     * revient à arriver sur sa destination, sauf pour la racine elle-même
+     */
+    private void compute(final int source)
+    {
+	int head = 0, tail = 0;
+
+	dirs.clear();
+	distances.clear();
+	distances.set(source, 0);
+	queue[tail++] = source;
+
+	while (head < tail) {
+	    final int cell     = queue[head++];
+	    final int distance = distances.get(cell) + 1;
+	    final int partner  = board.getDestination(cell);
+
+	    // On arrive sur la case en y entrant directement, sauf s'il s'agit
+	    // d'un téléporteur autre que la racine
+	    if (partner < 0 || cell == source)
+		tail = visit(cell, distance, tail);
+
+	    // On arrive sur un téléporteur en entrant dans celui qui y mène
+	    if (partner >= 0 && board.getDestination(partner) == cell)
+		tail = visit(partner, distance, tail);
+	}
+    }
+
+    /**
+     * Ajoute à la file les cases voisines d'une case qui n'ont pas encore
+     * été atteintes, et retourne la nouvelle fin de la file
+     */
+    private int visit(final int cell, final int distance, int tail)
+    {
+	final int   exits = board.getCellExits(cell);
+	final int[] steps = board.getSteps();
+
+	for (int dir = 0; dir < steps.length; dir++) {
+	    if ((exits & (1 << dir)) == 0)
+		continue;
+
+	    // La case voisine rejoint la case courante par la direction
+	    // opposée (LEFT <-> RIGHT, UP <-> DOWN)
+	    final int prev = cell + steps[dir];
+	    if (distances.get(prev) < 0) {
+		distances.set(prev, distance);
+		dirs.set(prev, dir ^ 1);
+		if (tail == queue.length)
+		    queue = Arrays.copyOf(queue, tail * 2);
+		queue[tail++] = prev;
+	    }
+	}
+
+	return tail;
+    }
+
+    /**
+     * Obtient la direction à prendre depuis une case pour rejoindre la
+     * racine, ou -1 si c'est la racine ou si elle n'est pas accessible
+     */
+    public int getDir(final int x, final int y)
+    {
+	return dirs.get(board.cell(x, y));
+    }
+
+    /**
+     * Obtient la distance en cases d'une case à la racine, ou -1 si la
+     * racine n'est pas accessible
+     */
+    public int getDistance(final int x, final int y)
+    {
+	return distances.get(board.cell(x, y));
+    }
+
+    /**
+     * Obtient, parmi les sorties d'une case autres que la direction
+     * interdite, celle qui éloigne le plus de la racine, ou -1 s'il n'y en
+     * a aucune
+     */
+    public int getFleeDir(final int x, final int y, final int forbidden)
+    {
+	final int   from = board.cell(x, y), exits = board.getCellExits(from);
+	final int[] steps = board.getSteps();
+	int best = -1, bestDistance = -1;
+
+	for (int dir = 0; dir < steps.length; dir++)
+	    if (dir != forbidden && (exits & (1 << dir)) != 0) {
+		int next = from + steps[dir];
+		if (board.getDestination(next) >= 0)
+		    next = board.getDestination(next);
+
+		if (distances.get(next) > bestDistance) {
+		    best = dir;
+		    bestDistance = distances.get(next);
+		}
+	    }
+
+	return best;
+    }
+}
+
+// Fin du fichier
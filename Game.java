@@ -1,34 +1,39 @@
 /*
  * ---------------------------------------------------------------------------
  *
- * Facman -- Un clne de Pacman en Java
+ * Facman -- Un clône de Pacman en Java
  * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
  *
  * ---------------------------------------------------------------------------
  *
  * Fichier     : Game.java
  *
- * Description : La classe Game effectue tout les calculs ncessaires pour le
- *               droulement du jeu.
+ * Description : La classe Game effectue tout les calculs nécessaires pour le
+ *               déroulement du jeu.
  *
- * Commentaire : C'est la classe principale du jeu. Elle gre la grille de
- *               jeu, les personnages, le timer, et les vnements clavier.
+ * Commentaire : C'est la classe principale du jeu. Elle gère l'affichage de
+ *               la grille de jeu et des personnages, et les événements
+ *               clavier ; les règles du jeu elles-mêmes sont appliquées
+ *               par la classe Simulation, et le jeu est cadencé par une
+ *               horloge (voir GameClock). Les méthodes appelées par
+ *               l'horloge et par les événements clavier sont synchronisées,
+ *               l'horloge pouvant utiliser son propre thread.
  *
  * ---------------------------------------------------------------------------
  *
  * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
- * modifier conformment aux dispositions de la Licence Publique Gnrale GNU,
- * telle que publie par la Free Software Foundation ; version 2 de la
- * licence, ou encore ( votre convenance) toute version ultrieure.
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
  *
- * Ce programme est distribu dans l'espoir qu'il sera utile, mais SANS AUCUNE
- * GARANTIE ; sans mme la garantie implicite de COMMERCIALISATION ou
- * D'ADAPTATION  UN OBJET PARTICULIER. Pour plus de dtail, voir la Licence
- * Publique Gnrale GNU.
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
  *
- * Vous devez avoir reu un exemplaire de la Licence Publique Gnrale GNU en
- * mme temps que ce programme ; si ce n'est pas le cas, crivez  la Free
- * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, tats-Unis.
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
  *
  * ---------------------------------------------------------------------------
  */
@@ -46,45 +51,65 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import javax.swing.Timer;
+import java.io.File;
+import java.io.IOException;
 
 /**
- * La classe Game, qui gre tout ce qui est en rapport avec l'excution du jeu
- * lui-mme et l'intraction avec les autres classes.
+ * La classe Game, qui gère tout ce qui est en rapport avec l'exécution du jeu
+ * lui-même et l'intéraction avec les autres classes.
  */
 class Game implements ActionListener, KeyListener
 {
-    // Variables relatives au timer
-    private static final int     IMG_PER_SEC = 25;
-    private static final int     DELAY = 1000 / IMG_PER_SEC;
-    private        final Timer   timer;
-    private              boolean sleeping = false;
-
-    // Personnages : Pacman et les fantmes
-    private static final int     MAX_NB_GHOSTS = 4;
+    // Variables relatives à l'horloge ; DELAY est la durée d'un tour en
+    // millisecondes
+    private static final int       IMG_PER_SEC = 25;
+    static         final int       DELAY = 1000 / IMG_PER_SEC;
+    private        final GameClock clock;
+    private              boolean   sleeping = false;
+
+    // Personnages : Pacman et les fantômes
+    private static final int     MAX_NB_GHOSTS = Simulation.MAX_NB_GHOSTS;
     private        final Pacman  pacman;
     private        final Ghost[] ghosts = new Ghost[MAX_NB_GHOSTS];
-    private              int     nbGhosts;
     private        final Image[] pacmanImg;
 
-    // Pile pour l'apparition des fantmes
-    private static final int   BIRTH_DELAY = 150;
-    private        final int[] ghostStack = new int[MAX_NB_GHOSTS];
-    private              int   stackSize = 0, stackStart = 0;
-    private              int   birth = 0;
+    // Contrôleur de Pacman, suivant les touches de direction enfoncées
+    private final KeyboardController keyboard = new KeyboardController();
 
-    // Variables utilises pour la pause
+    // Nombre de secondes de jeu vers lesquelles il est possible de revenir
+    // (touche retour arrière)
+    static final int HISTORY_SECONDS = 10;
+
+    // Enregistrement de la partie en cours, écrit à la fin de la partie
+    // dans le répertoire indiqué par la propriété facman.record si elle est
+    // définie (voir Recording)
+    private static final String    RECORD_DIRECTORY =
+	getProperty("facman.record");
+    private        final Recording recording = new Recording();
+
+    // Serveur de parties (hôte[:port]) indiqué par la propriété
+    // facman.server : s'il est défini, la partie est jouée par le serveur
+    // et la simulation locale ne fait qu'appliquer les tours reçus (voir
+    // GameClient) ; l'historique et l'enregistrement ne sont alors pas
+    // utilisés
+    private static final String     SERVER = getProperty("facman.server");
+    private              GameClient client = null;
+
+    // Mesures des durées des tours, publiées par JMX
+    private final TickMetrics metrics = new TickMetrics(DELAY * 1000000L);
+
+    // Variables utilisées pour la pause
     private static final Color    PAUSE_COLOR = new Color(0f, 0f, 0f, .5f);
     private        final int      width, height;
-    private              boolean  paused = false, playing, quitting;
+    private              boolean  paused = false, quitting;
 
-    // Variables utilises pour l'affichage de texte en images
-    private static final int      TEXT_IMG_WIDTH = 291, TEXT_IMG_HEIGHT = 70;
-    private static final int      PAUSE_IMG = 0, WIN_IMG = 1, LOST_IMG = 2;
-    private        final Image[]  textImages = new Image[3];
-    private        final Position textImgPos;
+    // Variables utilisées pour l'affichage de texte en images
+    private static final int       TEXT_IMG_WIDTH = 291, TEXT_IMG_HEIGHT = 70;
+    private static final int       PAUSE_IMG = 0, WIN_IMG = 1, LOST_IMG = 2;
+    private        final Image[][] textImages;
+    private        final Position  textImgPos;
 
-    // Variables utilises pour l'affichage des textes
+    // Variables utilisées pour l'affichage des textes
     private static final int         RECT_LEVEL = 0, RECT_SCORE = 1;
     private static final int         RECT_LIVES = 2, RECT_BASELINE = 17;
     private static final Rectangle[] RECTANGLES = {
@@ -93,73 +118,83 @@ class Game implements ActionListener, KeyListener
 	new Rectangle(569, 9, 62, 22)
     };
 
-    // Variables utilises pour le calcul du score et des vies
-    private static final int SCORE_GUM = 1, SCORE_SUPERGUM = 5;
-    private static final int SCORE_EAT = 10, SCORE_EATEN = 10;
-    private static final int SCORE_LEVEL = 50;
-    private              int score = 0, lives;
+    // Image de la fenêtre, chargée comme une grille d'une seule image
+    private static final int     WINDOW_WIDTH = 640, WINDOW_HEIGHT = 480;
+    private        final Image[] window;
 
-    // Image de la fentre
-    private final Image window;
-
-    // Grille de jeu
-    private final Board board;
+    // Grille de jeu et règles du jeu, et rectangle de la vue de la grille,
+    // obtenu une fois pour toutes puisque Board en crée un à chaque appel
+    private static final Rectangle  VIEW = Board.getRectangle();
+    private        final Board      board;
+    private        final Simulation simulation;
 
     // Contexte graphique dans lequel dessiner
     private final Graphics gc;
 
-    // Composant charg de l'affichage
-    private final Component component;
+    // Composant chargé de l'affichage et zone de celui-ci à rafraîchir
+    private final Component   component;
+    private final DirtyRegion dirty = new DirtyRegion();
 
-    // cran d'accueil
+    // Écran d'accueil
     private final HomeScreen home;
 
     /**
      * Constructeur de la classe Game
      */
     public Game(final Graphics gc, final ImageLoader loader,
-		final Component component, final HomeScreen home)
+		final Component component, final HomeScreen home,
+		final GameClock clock)
     {
 	// Initialise l'objet
 	this.gc        = gc;
 	this.component = component;
 	this.home      = home;
+	this.clock     = clock;
 	width  = component.getWidth();
 	height = component.getHeight();
 
-	// Cre les objets auxiliaires
-	board = new Board(loader, component, this);
-	timer = new Timer(DELAY, this);
+	// Crée les objets auxiliaires
+	board = new Board(loader, component);
+	clock.setGame(this);
+	metrics.register();
 
-	// Cre les personnages
-	pacman = new Pacman(board, loader, component);
+	// Crée les personnages
+	pacman = new Pacman(board, loader);
 	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
 	    ghosts[ghost] = new Ghost(board, loader, ghost, pacman);
+	simulation = new Simulation(board, pacman, ghosts);
+	simulation.setController(keyboard);
+	simulation.setHistory(new History(HISTORY_SECONDS * IMG_PER_SEC));
 
 	// Charge les images
-	Image[][] images = loader.load("texts", 1, textImages.length,
-				       TEXT_IMG_WIDTH, TEXT_IMG_HEIGHT);
-	for (int image = 0; image < textImages.length; image++)
-	    textImages[image] = images[image][0];
+	textImages = loader.load("texts", 1, 3,
+				 TEXT_IMG_WIDTH, TEXT_IMG_HEIGHT);
 	textImgPos = new Position((width - TEXT_IMG_WIDTH) / 2,
 				  (height - TEXT_IMG_HEIGHT) / 2);
 	pacmanImg = loader.load("pacman2", 2, 1)[0];
-	window = loader.load("window");
+	window = loader.load("window", 1, 1, WINDOW_WIDTH, WINDOW_HEIGHT)[0];
+    }
+
+    /**
+     * Soumet le chargement des niveaux
+     */
+    public void load(final Startup startup)
+    {
+	board.loadLevels(startup);
     }
 
     /**
-     * Initialise l'objet et charge les donnes
+     * Initialise l'objet une fois les données chargées
      */
     public void init()
     {
 	board.initImages();
-	board.loadLevels();
     }
 
     /**
-     * Mthode publique servant  lancer le jeu
+     * Méthode publique servant à lancer le jeu
      */
-    public void run()
+    public synchronized void run()
     {
 	// Initialisation de la police
 	gc.setFont(new Font("SansSerif", Font.BOLD, 14));
@@ -173,39 +208,15 @@ class Game implements ActionListener, KeyListener
      */
     public int getScore()
     {
-	return score;
+	return simulation.getScore();
     }
 
     /**
-     * Dfinit le niveau de difficult
+     * Définit le niveau de difficulté
      */
     public void setDifficulty(final int difficulty)
     {
-	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
-	    ghosts[ghost].setDifficulty(difficulty);
-    }
-
-    /**
-     * Initialise l'tat et la position de chaque personnage
-     */
-    private void initCharacters()
-    {
-	// Initialise la position des personnages
-	pacman.initPosition();
-	ghosts[0].undie();
-	for (int ghost = 1; ghost < MAX_NB_GHOSTS; ghost++) {
-	    ghosts[ghost].die();
-	    ghostStack[ghost - 1] = ghost;
-	}
-
-	// Initialise la pile d'apparition des fantmes
-	stackSize = MAX_NB_GHOSTS - 1;
-	stackStart = 0;
-	birth = BIRTH_DELAY;
-
-	// Met le jeu en attente d'action de l'utilisateir
-	playing  = false;
-	quitting = false;
+	simulation.setDifficulty(difficulty);
     }
 
     /**
@@ -213,18 +224,12 @@ class Game implements ActionListener, KeyListener
      */
     private boolean nextLevel()
     {
-	// Charge le niveau suivant
-	if (!board.nextLevel())
+	// Charge le niveau suivant et initialise les personnages
+	if (!simulation.nextLevel())
 	    return false;
+	quitting = false;
 
-	// Initialise la position des personnages
-	initCharacters();
-
-	// Mise  jour du score et des vies
-	score += SCORE_LEVEL;
-	lives++;
-
-	// Redessine la fentre
+	// Redessine la fenêtre
 	paint();
 	displayLevel();
 	displayScore();
@@ -234,29 +239,93 @@ class Game implements ActionListener, KeyListener
     }
 
     /**
-     * Redessine tout l'cran de jeu
+     * Redessine tout l'écran de jeu
      */
     private void paint()
     {
-	// Dessine le terrain
+	// Dessine le terrain, la vue suivant Pacman
+	board.follow(pacman.getDrawPosition());
 	board.paint(gc);
 
 	// Dessine les personnages
-	pacman.draw(gc);
+	pacman.paint(gc);
 	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
-	    ghosts[ghost].draw(gc);
+	    ghosts[ghost].paint(gc);
+	dirty.addAll();
     }
 
     /**
-     * Demande  la fentre ou  l'applet de mettre  jour son contenu
+     * Demande à la fenêtre ou à l'applet de mettre à jour la partie de son
+     * contenu qui a changé
      */
     private void update()
     {
-	component.repaint();
+	clock.update(dirty, component);
+    }
+
+    /**
+     * Efface les personnages là où ils ont été dessinés et marque ces zones
+     * comme étant à rafraîchir
+     */
+    private void clearCharacters()
+    {
+	clearCharacter(pacman);
+	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
+	    clearCharacter(ghosts[ghost]);
+    }
+
+    /**
+     * Efface un personnage là où il a été dessiné
+     */
+    private void clearCharacter(final Character chr)
+    {
+	board.clearImage(gc, chr.getDrawPosition());
+	board.addImage(dirty, chr.getDrawPosition());
+    }
+
+    /**
+     * Place les personnages à leur position d'affichage et la vue sur
+     * Pacman, puis marque les zones correspondantes comme étant à
+     * rafraîchir ; si la vue a bougé, toute la grille est redessinée
+     */
+    private void placeCharacters(final int alpha)
+    {
+	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
+	    ghosts[ghost].interpolate(alpha);
+	pacman.interpolate(alpha);
+
+	if (board.follow(pacman.getDrawPosition())) {
+	    board.paint(gc);
+	    dirty.add(VIEW);
+	} else {
+	    for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
+		board.addImage(dirty, ghosts[ghost].getDrawPosition());
+	    board.addImage(dirty, pacman.getDrawPosition());
+	}
+    }
+
+    /**
+     * Redessine les personnages entre deux tours de jeu, à des positions
+     * interpolées entre celles des deux derniers tours ; méthode appelée par
+     * les horloges à affichage interpolé
+     */
+    public synchronized void render(final int alpha)
+    {
+	if (paused || quitting || sleeping)
+	    return;
+
+	final long start = System.nanoTime();
+	clearCharacters();
+	placeCharacters(alpha);
+	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
+	    ghosts[ghost].paint(gc);
+	pacman.paint(gc);
+	update();
+	metrics.record(TickMetrics.FRAME, System.nanoTime() - start);
     }
 
     /**
-     * Affiche un texte aprs avoir effac le fond, dans le rectangle spcifi
+     * Affiche un texte après avoir effacé le fond, dans le rectangle spécifié
      */
     private void drawText(final int rectangle, final String text)
     {
@@ -277,10 +346,11 @@ class Game implements ActionListener, KeyListener
 						gc.getFontRenderContext()).
 				getWidth()),
 		      RECTANGLES[rectangle].y + RECT_BASELINE);
+	dirty.add(RECTANGLES[rectangle]);
     }
 
     /**
-     * Affiche un nombre dans un rectangle aprs l'avoir effac
+     * Affiche un nombre dans un rectangle après l'avoir effacé
      */
     private void drawText(final int rectangle, final int number)
     {
@@ -288,7 +358,7 @@ class Game implements ActionListener, KeyListener
     }
 
     /**
-     * Affiche le numro de niveau
+     * Affiche le numéro de niveau
      */
     private void displayLevel()
     {
@@ -300,7 +370,7 @@ class Game implements ActionListener, KeyListener
      */
     private void displayScore()
     {
-	drawText(RECT_SCORE, score);
+	drawText(RECT_SCORE, simulation.getScore());
     }
 
     /**
@@ -308,7 +378,7 @@ class Game implements ActionListener, KeyListener
      */
     private void displayLives()
     {
-	drawText(RECT_LIVES, lives);
+	drawText(RECT_LIVES, Math.max(simulation.getLives(), 0));
     }
 
     /**
@@ -316,8 +386,9 @@ class Game implements ActionListener, KeyListener
      */
     private void drawTextImage(final int image)
     {
-	gc.drawImage(textImages[image], textImgPos.x, textImgPos.y,
+	gc.drawImage(textImages[image][0], textImgPos.x, textImgPos.y,
 		     component);
+	dirty.add(textImgPos.x, textImgPos.y, TEXT_IMG_WIDTH, TEXT_IMG_HEIGHT);
     }
 
     /**
@@ -325,25 +396,39 @@ class Game implements ActionListener, KeyListener
      */
     private void beginGame()
     {
-	// Dessine la fentre
+	// Dessine la fenêtre
 	board.paintBorder(gc);
-	gc.drawImage(window, 0, 0, component);
+	gc.drawImage(window[0], 0, 0, component);
+	dirty.addAll();
+
+	// Connexion au serveur, s'il y en a un ; s'il est injoignable, la
+	// partie est jouée localement
+	if (SERVER != null)
+	    try {
+		client = new GameClient(SERVER, simulation.getDifficulty(),
+					board.getLevelCount());
+	    } catch (IOException e) {
+		System.err.println("Serveur injoignable : " + SERVER + " : " +
+				   e.getMessage());
+	    }
 
-	// Charge le premier niveau
-	board.resetLevel();
-	score = -SCORE_LEVEL;
-	lives = 1;
+	// Charge le premier niveau, avec une nouvelle graine
+	final long seed = System.currentTimeMillis();
+	simulation.setSeed(seed);
+	recording.start(simulation.getDifficulty(), seed);
+	simulation.resetGame();
+	keyboard.reset();
 	nextLevel();
 
-	// Redessine la fentre
+	// Redessine la fenêtre
 	paint();
 	update();
 
-	// Ajoute la gestion des vnements clavier
+	// Ajoute la gestion des événements clavier
 	component.addKeyListener(this);
 
-	// Dmarre le timer
-	timer.start();
+	// Démarre l'horloge
+	clock.start();
     }
 
     /**
@@ -351,31 +436,85 @@ class Game implements ActionListener, KeyListener
      */
     private void endGame()
     {
-	// Arrt du timer
-	timer.stop();
+	// Arrêt de l'horloge
+	clock.stop();
 
-	// Retire la gestion des vnements clavier
+	// Retire la gestion des événements clavier et les mesures publiées
 	component.removeKeyListener(this);
+	metrics.unregister();
+
+	// Ferme la connexion au serveur, ou écrit l'enregistrement de la
+	// partie
+	if (client != null) {
+	    client.close();
+	    client = null;
+	} else {
+	    recording.setResult(simulation);
+	    saveRecording();
+	}
 
-	// Rend la main  l'cran d'accueil
+	// Rend la main à l'écran d'accueil
 	home.run();
     }
 
+    /**
+     * Obtient la valeur d'une propriété système, ou null si elle n'est pas
+     * définie
+     */
+    private static String getProperty(final String name)
+    {
+	try {
+	    return System.getProperty(name);
+	} catch (SecurityException e) {
+	    // Propriété inaccessible (applet)
+	    return null;
+	}
+    }
+
+    /**
+     * Écrit l'enregistrement de la partie terminée, si demandé ; un échec
+     * est signalé sans interrompre le jeu
+     */
+    private void saveRecording()
+    {
+	if (RECORD_DIRECTORY == null)
+	    return;
+
+	final File file = new File(RECORD_DIRECTORY, "facman-" +
+				   Long.toHexString(recording.getSeed()) +
+				   ".rec");
+	try {
+	    recording.write(file);
+	} catch (IOException e) {
+	    System.err.println("Enregistrement impossible : " + file + " : " +
+			       e.getMessage());
+	}
+    }
+
     /**
      * Met le jeu en pause
      */
     private void beginPause()
     {
-	// Arrte le timer
+	// Arrête l'horloge
 	paused = true;
-	timer.stop();
+	clock.stop();
+	pauseServer(true);
 
 	// Affiche le texte de pause
-	final Rectangle rect = board.getRectangle();
+	paintPause();
+	update();
+    }
+
+    /**
+     * Assombrit la grille et affiche le texte de pause par-dessus
+     */
+    private void paintPause()
+    {
 	gc.setColor(PAUSE_COLOR);
-	gc.fillRect(rect.x, rect.y, rect.width, rect.height);
+	gc.fillRect(VIEW.x, VIEW.y, VIEW.width, VIEW.height);
+	dirty.add(VIEW);
 	drawTextImage(PAUSE_IMG);
-	update();
     }
 
     /**
@@ -383,21 +522,57 @@ class Game implements ActionListener, KeyListener
      */
     private void endPause()
     {
-	// Ractive le timer
+	// Réactive l'horloge
 	paused = false;
 	paint();
 	update();
-	timer.start();
+	pauseServer(false);
+	clock.start();
+    }
+
+    /**
+     * Met en pause la partie sur le serveur, ou l'en sort ; une connexion
+     * perdue sera signalée au tour suivant
+     */
+    private void pauseServer(final boolean paused)
+    {
+	if (client != null)
+	    try {
+		client.setPaused(paused);
+	    } catch (IOException e) {
+		// Signalée par GameClient.step()
+	    }
+    }
+
+    /**
+     * Revient en arrière du nombre de tours indiqué (dans la limite de
+     * l'historique) et redessine l'écran de jeu, y compris en pause
+     */
+    private void rewind(final int ticks)
+    {
+	// Le serveur seul fait avancer une partie en réseau
+	if (client != null)
+	    return;
+
+	final int rewound = simulation.rewind(ticks);
+	if (rewound == 0)
+	    return;
+	recording.truncate(rewound);
+
+	paint();
+	displayScore();
+	displayLives();
+	if (paused)
+	    paintPause();
+	update();
     }
 
     /**
-     * Endort le jeu pendant un certain temps en modifiant le timer
+     * Endort le jeu pendant un certain temps
      */
     private void sleep(int time)
     {
-	timer.setInitialDelay(time);
-	timer.setRepeats(false);
-	timer.restart();
+	clock.sleep(time);
 	sleeping = true;
     }
 
@@ -410,22 +585,21 @@ class Game implements ActionListener, KeyListener
     }
 
     /**
-     * Mthode appele lors de la victoire ou de la mort de Pacman
+     * Méthode appelée lors de la victoire ou de la mort de Pacman
      */
     private boolean endLevel()
     {
 	// Victoire
-	if (board.getGumCount() == 0)
+	if (simulation.isLevelWon())
 	    return nextLevel();
 
-	if (lives >= 0) {
-	    // Effacement des cases occupes par les personnages
-	    board.clearBoxes(gc, pacman);
-	    for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
-		board.clearBoxes(gc, ghosts[ghost]);
+	if (!simulation.isGameOver()) {
+	    // Effacement des cases occupées par les personnages
+	    clearCharacters();
 
-	    // Rinitialisation des personnages
-	    initCharacters();
+	    // Réinitialisation des personnages
+	    simulation.initCharacters();
+	    quitting = false;
 	    update();
 	    return true;
 	}
@@ -436,170 +610,129 @@ class Game implements ActionListener, KeyListener
     }
 
     /**
-     * Mthode appele priodiquement par le timer
+     * Méthode appelée périodiquement par l'horloge
      */
-    public void actionPerformed(final ActionEvent event)
+    public synchronized void actionPerformed(final ActionEvent event)
     {
 	// Si le jeu est en attente
 	if (sleeping) {
 	    sleeping = false;
-	    if (endLevel()) {
-		timer.setInitialDelay(DELAY);
-		timer.setRepeats(true);
-		timer.restart();
-	    }
+	    if (endLevel())
+		clock.start();
 	    return;
 	}
 
-	// Si le joueur n'a pas commenc la partie
-	if (!playing) {
-	    board.clearBoxes(gc, pacman);
-	    board.clearBoxes(gc, ghosts[0]);
-	    pacman.draw(gc);
-	    ghosts[0].draw(gc);
-	    update();
-	    return;
+	// Effacement des cases occupées par les personnages
+	final long start = System.nanoTime();
+	clearCharacters();
+	final long cleared = System.nanoTime();
+
+	// Effectue le mouvement de chaque personnage, ou applique les tours
+	// joués par le serveur
+	final int events;
+	if (client != null)
+	    try {
+		events = client.step(simulation, keyboard);
+	    } catch (IOException e) {
+		System.err.println("Connexion au serveur perdue : " +
+				   e.getMessage());
+		endGame();
+		return;
+	    }
+	else {
+	    events = simulation.step();
+	    if (events != Simulation.EVENT_WAITING)
+		recording.add(simulation.getKeys());
 	}
-
-	// Effacement des cases occupes par les personnages
-	board.clearBoxes(gc, pacman);
+	final long moved = System.nanoTime();
+
+	// Dessine les personnages ; avec une horloge à affichage interpolé,
+	// ils restent d'abord à leur position du tour précédent, sauf si le
+	// niveau s'arrête
+	final int alpha = clock.isInterpolated() &&
+	    (events & (Simulation.EVENT_WON | Simulation.EVENT_EATEN)) == 0 ?
+	    0 : Character.ALPHA_ONE;
+	placeCharacters(alpha);
 	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
-	    board.clearBoxes(gc, ghosts[ghost]);
-
-	// Effectue le mouvement de chaque personnage
-	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++) {
-	    ghosts[ghost].doMove();
 	    ghosts[ghost].draw(gc);
-	}
-	pacman.doMove();
 	pacman.draw(gc);
+	final long drawn = System.nanoTime();
 
-	// Fait "renatre" les fantmes "morts"
-	if (stackSize > 0) {
-	    if (birth > 0)
-		birth--;
-	    else {
-		ghosts[ghostStack[stackStart]].undie();
-		stackStart = (stackStart + 1) % MAX_NB_GHOSTS;
-		stackSize--;
-		birth = BIRTH_DELAY;
-	    }
-	}
+	// Affiche le score s'il a changé
+	if ((events & Simulation.EVENT_SCORE) != 0)
+	    displayScore();
 
 	// Teste s'il y a une fin de partie
-	if (board.getGumCount() == 0) {
-	    // Gagn !
-	    board.drawImage(gc, pacmanImg[0], pacman.getPosition());
+	if ((events & Simulation.EVENT_WON) != 0) {
+	    // Gagné !
+	    board.drawImage(gc, pacmanImg[0], pacman.getDrawPosition());
 	    drawTextImage(WIN_IMG);
 	    sleep();
-	} else
-	    // Teste les collisions
-	    for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
-		if (!ghosts[ghost].isDead() &&
-		    pacman.collides(ghosts[ghost])) {
-		    if (ghosts[ghost].isAfraid()) {
-			// Pacman mange le fantme
-			score += SCORE_EAT;
-			displayScore();
-			ghosts[ghost].die();
-			ghostStack[(stackStart + stackSize++) % MAX_NB_GHOSTS]
-			    = ghost;
-		    } else {
-			// Le fantme mange Pacman
-			board.drawImage(gc, pacmanImg[1],
-					pacman.getPosition());
-
-			// Mise  jour du score
-			if ((score -= SCORE_EATEN) < 0)
-			    score = 0;
-			displayScore();
-
-			// Mise  jour des vies
-			if (lives > 0) {
-			    lives--;
-			    displayLives();
-			} else {
-			    displayLives();
-			    lives--;
-			    drawTextImage(LOST_IMG);
-			}
-
-			// Mise en pause
-			sleep();
-		    }
-		}
+	} else if ((events & Simulation.EVENT_EATEN) != 0) {
+	    // Le fantôme mange Pacman
+	    board.drawImage(gc, pacmanImg[1], pacman.getDrawPosition());
+	    displayLives();
+	    if ((events & Simulation.EVENT_LOST) != 0)
+		drawTextImage(LOST_IMG);
+
+	    // Mise en pause
+	    sleep();
+	}
+	final long displayed = System.nanoTime();
 
 	// Affiche les changements
 	update();
-    }
 
-    /**
-     * Mthode appele lorsque Pacman mange une pastille
-     */
-    public void ateGum(final boolean superGum)
-    {
-	if (!superGum)
-	    // Pastille normale
-	    score += SCORE_GUM;
-	else {
-	    // Super pastille
-	    score += SCORE_SUPERGUM;
-	    for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
-		ghosts[ghost].fear();
-	}
-
-	// Affiche le score mis  jour
-	displayScore();
+	// Mesure de la durée de chaque phase
+	final long end = System.nanoTime();
+	metrics.record(TickMetrics.CLEAR, cleared - start);
+	metrics.record(TickMetrics.MOVE, moved - cleared);
+	metrics.record(TickMetrics.DRAW, drawn - moved);
+	metrics.record(TickMetrics.HUD, displayed - drawn);
+	metrics.record(TickMetrics.TICK, end - start);
     }
 
     /**
-     * Mthode appele quand une touche est enfonce
+     * Méthode appelée quand une touche est enfoncée
      */
-    public void keyPressed(final KeyEvent event)
+    public synchronized void keyPressed(final KeyEvent event)
     {
+	// Les touches de direction sont transmises à Pacman au prochain tour
+	keyboard.keyPressed(event);
+
 	if (!sleeping) {
 	    if (!quitting)
 		switch (event.getKeyCode()) {
-		case KeyEvent.VK_LEFT:
-		case KeyEvent.VK_KP_LEFT:
-		case KeyEvent.VK_NUMPAD4:
-		case KeyEvent.VK_RIGHT:
-		case KeyEvent.VK_KP_RIGHT:
-		case KeyEvent.VK_NUMPAD6:
-		case KeyEvent.VK_UP:
-		case KeyEvent.VK_KP_UP:
-		case KeyEvent.VK_NUMPAD8:
-		case KeyEvent.VK_DOWN:
-		case KeyEvent.VK_KP_DOWN:
-		case KeyEvent.VK_NUMPAD2:
-		    // Dmarre le jeu si une touche de direction est appuye
-		    if (!playing)
-			playing = true;
-		    break;
-
 		case KeyEvent.VK_SPACE:
-		    // Si espace est appuye, on met en pause ou on en sort
+		    // Si espace est appuyée, on met en pause ou on en sort
 		    if (!paused)
 			beginPause();
 		    else
 			endPause();
 		    break;
 
+		case KeyEvent.VK_BACK_SPACE:
+		    // Retour arrière : revient une seconde plus tôt, ou d'un
+		    // seul tour avec la touche majuscule
+		    rewind(event.isShiftDown() ? 1 : IMG_PER_SEC);
+		    break;
+
 		case KeyEvent.VK_ESCAPE:
-		    // chappement : on veut arrter le jeu
+		    // Échappement : on veut arrêter le jeu
 
-		    // Arrt du timer
-		    timer.stop();
+		    // Arrêt de l'horloge
+		    clock.stop();
+		    pauseServer(true);
 		    quitting = true;
 
 		    // Dessin de la question
-		    final Rectangle rect = board.getRectangle();
 		    gc.setColor(PAUSE_COLOR);
-		    gc.fillRect(rect.x, rect.y, rect.width, rect.height);
+		    gc.fillRect(VIEW.x, VIEW.y, VIEW.width, VIEW.height);
 		    gc.setFont(new Font("SansSerif", Font.BOLD, 20));
 		    gc.setColor(Color.WHITE);
 		    home.drawCenteredText("Voulez-vraiment abandonner ? " +
 					  "(O/N)", width / 2, height / 2);
+		    dirty.add(VIEW);
 		    update();
 		}
 	    else
@@ -615,22 +748,27 @@ class Game implements ActionListener, KeyListener
 		    paint();
 		    update();
 		    quitting = false;
-		    timer.start();
+		    pauseServer(paused);
+		    clock.start();
 		}
 	}
     }
 
     /**
-     * Mthode appele quand une touche est relche
+     * Méthode appelée quand une touche est relâchée
      */
-    public void keyReleased(final KeyEvent event) { /* Non utilise */ }
+    public synchronized void keyReleased(final KeyEvent event)
+    {
+	// Une direction relâchée n'est plus transmise à Pacman
+	keyboard.keyReleased(event);
+    }
 
     /**
-     * Mthode appele quand une touche gnre un vnement "entre d'un
-     * caractre", ce qui peut arriver plusieurs fois lors d'un seul
-     * enfoncement de touche  intervalle rgulier (rptition)
+     * Méthode appelée quand une touche génère un événement "entrée d'un
+     * caractère", ce qui peut arriver plusieurs fois lors d'un seul
+     * enfoncement de touche à intervalle régulier (répétition)
      */
-    public void keyTyped(final KeyEvent event) { /* Non utilise */ }
+    public void keyTyped(final KeyEvent event) { /* Non utilisée */ }
 }
 
 // Fin du fichier
@@ -0,0 +1,353 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : GameClient.java
+ *
+ * Description : La classe GameClient relie le jeu à un serveur de parties :
+ *               elle envoie les touches du joueur et applique à la simulation
+ *               locale les tours joués par le serveur.
+ *
+ * Commentaire : La simulation locale ne sert plus qu'à l'affichage ; la classe
+ *               contient aussi un test de charge, où de nombreux clients
+ *               pilotés par programme jouent en même temps depuis un seul
+ *               thread.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * La classe GameClient, connexion à un serveur de parties (voir GameServer)
+ * : à chaque tour, les touches du joueur sont transmises au serveur et les
+ * tours qu'il a joués depuis sont appliqués à la simulation locale, sans
+ * jamais bloquer
+ */
+class GameClient
+{
+    // Nombre de tours reçus pouvant attendre d'être appliqués
+    private static final int BUFFER_FRAMES = 64;
+
+    // Délai maximal de connexion, puis de réponse du serveur au message de
+    // bienvenue, en millisecondes : la connexion est établie par le thread
+    // de l'horloge, qui ne doit pas rester bloqué
+    private static final int TIMEOUT = 2000;
+
+    // Connexion, tours reçus pas encore appliqués et tour en cours
+    // d'application
+    private final SocketChannel channel;
+    private final ByteBuffer    input = ByteBuffer.allocate(BUFFER_FRAMES *
+							    GameServer.
+							    FRAME_BYTES);
+    private final ByteBuffer    output = ByteBuffer.allocate(1);
+    private final int[]         frame = new int[GameServer.FRAME_SIZE];
+    private final Position      gum = new Position();
+
+    // Dernier message envoyé (-1 si aucun), touches et pause à envoyer,
+    // fin de la connexion par le serveur et nombre de tours appliqués
+    private int     sent = -1, keys = 0;
+    private boolean paused = false, closed = false;
+    private int     frames = 0;
+
+    /**
+     * Constructeur : se connecte au serveur indiqué (hôte[:port]) et
+     * demande une partie dans la difficulté indiquée ; le serveur doit
+     * avoir autant de niveaux que le client
+     */
+    public GameClient(final String address, final int difficulty,
+		      final int levelCount) throws IOException
+    {
+	final int    colon = address.lastIndexOf(':');
+	final String host = colon >= 0 ? address.substring(0, colon)
+				       : address;
+	int          port = GameServer.DEFAULT_PORT;
+	if (colon >= 0)
+	    try {
+		port = Integer.parseInt(address.substring(colon + 1));
+	    } catch (NumberFormatException e) {
+		throw new IOException("Port invalide : " + address);
+	    }
+
+	channel = SocketChannel.open();
+	try {
+	    channel.socket().connect(new InetSocketAddress(host, port),
+				     TIMEOUT);
+	    channel.socket().setTcpNoDelay(true);
+	    channel.socket().setSoTimeout(TIMEOUT);
+
+	    // Bienvenue, en mode bloquant
+	    final ByteBuffer hello = ByteBuffer.allocate(8);
+	    hello.putInt(GameServer.MAGIC);
+	    hello.putInt(difficulty);
+	    hello.flip();
+	    while (hello.hasRemaining())
+		channel.write(hello);
+
+	    // Réponse, lue par le flux de la socket, seul à respecter le délai
+	    final DataInputStream reply =
+		new DataInputStream(channel.socket().getInputStream());
+	    final int magic, count;
+	    try {
+		magic = reply.readInt();
+		count = reply.readInt();
+	    } catch (EOFException e) {
+		throw new IOException("Connexion refusée par le serveur");
+	    }
+	    if (magic != GameServer.MAGIC)
+		throw new IOException("Réponse invalide du serveur");
+	    if (count != levelCount)
+		throw new IOException("Le serveur n'a pas les mêmes niveaux");
+
+	    channel.configureBlocking(false);
+	} catch (IOException e) {
+	    close();
+	    throw e;
+	}
+    }
+
+    /**
+     * Transmet les touches du contrôleur au serveur, puis applique à la
+     * simulation les tours reçus depuis le dernier appel, en s'arrêtant
+     * après une vie perdue ou un niveau gagné (le reste attend l'appel
+     * suivant, après Simulation.endLevel()). Retourne la combinaison des
+     * événements de ces tours, ou EVENT_WAITING si aucun n'est arrivé.
+     */
+    public int step(final Simulation simulation, final Controller controller)
+	throws IOException
+    {
+	keys = controller.getKeys(simulation) & GameServer.KEYS;
+	send();
+
+	// Lecture de ce qui est arrivé
+	if (!closed && channel.read(input) < 0)
+	    closed = true;
+
+	// Application des tours complets
+	int     events = Simulation.EVENT_NONE;
+	boolean applied = false;
+	input.flip();
+	while (input.remaining() >= GameServer.FRAME_BYTES) {
+	    for (int i = 0; i < GameServer.FRAME_SIZE; i++)
+		frame[i] = input.getInt();
+	    apply(simulation);
+	    applied = true;
+	    events |= frame[GameServer.FRAME_EVENTS];
+	    if ((events & (Simulation.EVENT_WON |
+			   Simulation.EVENT_EATEN)) != 0)
+		break;
+	}
+	input.compact();
+	if (applied)
+	    return events;
+	if (closed)
+	    throw new IOException("Connexion fermée par le serveur");
+
+	// Aucun tour reçu : les personnages restent sur place
+	simulation.getPacman().savePosition();
+	for (int ghost = 0; ghost < Simulation.MAX_NB_GHOSTS; ghost++)
+	    simulation.getGhost(ghost).savePosition();
+	return Simulation.EVENT_WAITING;
+    }
+
+    /**
+     * Applique à la simulation le tour reçu : retire la pastille mangée
+     * puis restaure l'état de la fin du tour
+     */
+    private void apply(final Simulation simulation)
+    {
+	if (frame[GameServer.FRAME_GUM_X] >= 0) {
+	    gum.setPosition(frame[GameServer.FRAME_GUM_X],
+			    frame[GameServer.FRAME_GUM_Y]);
+	    simulation.getBoard().eatGum(gum);
+	}
+	simulation.receiveState(frame, GameServer.FRAME_STATE);
+	frames++;
+    }
+
+    /**
+     * Met en pause la partie sur le serveur, ou l'en sort
+     */
+    public void setPaused(final boolean paused) throws IOException
+    {
+	this.paused = paused;
+	send();
+    }
+
+    /**
+     * Envoie les touches et l'état de la pause s'ils ont changé ; si la
+     * connexion ne peut rien accepter, l'envoi sera retenté au prochain
+     * appel
+     */
+    private void send() throws IOException
+    {
+	final int message = keys | (paused ? GameServer.PAUSED : 0);
+	if (message == sent)
+	    return;
+
+	output.clear();
+	output.put((byte) message);
+	output.flip();
+	if (channel.write(output) > 0)
+	    sent = message;
+    }
+
+    /**
+     * Obtient le nombre de tours reçus et appliqués
+     */
+    public int getFrames()
+    {
+	return frames;
+    }
+
+    /**
+     * Ferme la connexion
+     */
+    public void close()
+    {
+	try {
+	    channel.close();
+	} catch (IOException e) {
+	    // Connexion déjà perdue
+	}
+    }
+
+    /**
+     * Test de charge : java GameClient [hôte[:port] [clients [secondes
+     * [difficulté]]]] fait jouer le nombre indiqué de clients pilotés par
+     * programme (voir BotController), tous depuis un seul thread, et
+     * affiche le nombre de tours reçus. Une partie terminée est aussitôt
+     * remplacée par une nouvelle. Un niveau annoncé gagné par le serveur
+     * alors qu'il reste des pastilles dans la simulation locale est compté
+     * comme une désynchronisation.
+     */
+    public static void main(final String argv[]) throws InterruptedException
+    {
+	String address = "localhost";
+	int    count = 100, seconds = 60, difficulty = 1;
+	try {
+	    if (argv.length > 0)
+		address = argv[0];
+	    if (argv.length > 1)
+		count = Integer.parseInt(argv[1]);
+	    if (argv.length > 2)
+		seconds = Integer.parseInt(argv[2]);
+	    if (argv.length > 3)
+		difficulty = Integer.parseInt(argv[3]);
+	} catch (NumberFormatException e) {
+	    count = -1;
+	}
+	if (argv.length > 4 || count <= 0 || seconds <= 0 ||
+	    difficulty < 0 || difficulty >= HomeScreen.CHOICES.length) {
+	    System.err.println("Utilisation : java GameClient [hôte[:port] " +
+			       "[clients [secondes [difficulté]]]]");
+	    System.exit(2);
+	}
+
+	// Clients, avec des simulations partageant les niveaux
+	final Board           levels = new Board();
+	levels.loadLevels();
+	final GameClient[]    clients = new GameClient[count];
+	final Simulation[]    simulations = new Simulation[count];
+	final BotController[] bots = new BotController[count];
+	for (int i = 0; i < count; i++) {
+	    simulations[i] = new Simulation(new Board(levels));
+	    bots[i] = new BotController();
+	}
+
+	// Tours de jeu, au rythme du jeu
+	final long tick = Game.DELAY * 1000000L;
+	final long start = System.nanoTime();
+	final long end = start + seconds * 1000000000L;
+	long       next = start, frames = 0;
+	int        games = 0, errors = 0, desyncs = 0;
+	while (next - end < 0) {
+	    for (int i = 0; i < count; i++) {
+		final Simulation simulation = simulations[i];
+
+		// Nouvelle partie
+		if (clients[i] == null)
+		    try {
+			clients[i] = new GameClient(address, difficulty,
+						    levels.getLevelCount());
+			simulation.resetGame();
+			simulation.nextLevel();
+			bots[i].reset(games + i);
+		    } catch (IOException e) {
+			errors++;
+			continue;
+		    }
+
+		// Tours reçus ; la partie s'arrête à la fin de la dernière
+		// vie ou du dernier niveau
+		int events;
+		try {
+		    events = clients[i].step(simulation, bots[i]);
+		} catch (IOException e) {
+		    errors++;
+		    events = Simulation.EVENT_LOST;
+		}
+		if ((events & Simulation.EVENT_WON) != 0 &&
+		    !simulation.isLevelWon())
+		    desyncs++;
+		if ((events & (Simulation.EVENT_WON | Simulation.EVENT_EATEN |
+			       Simulation.EVENT_LOST)) != 0 &&
+		    ((events & Simulation.EVENT_LOST) != 0 ||
+		     !simulation.endLevel())) {
+		    frames += clients[i].getFrames();
+		    clients[i].close();
+		    clients[i] = null;
+		    games++;
+		}
+	    }
+
+	    next += tick;
+	    final long wait = next - System.nanoTime();
+	    if (wait > 0)
+		Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+	}
+	for (int i = 0; i < count; i++)
+	    if (clients[i] != null)
+		frames += clients[i].getFrames();
+
+	final long time = (System.nanoTime() - start) / 1000000;
+	System.out.println(count + " client(s) pendant " + time + " ms : " +
+			   frames + " tour(s) reçu(s), soit " +
+			   frames * 1000 / time / count +
+			   " par seconde et par client (" +
+			   1000 / Game.DELAY + " attendus en jeu) ; " +
+			   games + " partie(s) terminée(s), " + errors +
+			   " erreur(s), " + desyncs +
+			   " désynchronisation(s)");
+	System.exit(errors > 0 || desyncs > 0 ? 1 : 0);
+    }
+}
+
+// Fin du fichier
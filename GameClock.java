@@ -0,0 +1,92 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : GameClock.java
+ *
+ * Description : La classe abstraite GameClock cadence le jeu : elle appelle
+ *               périodiquement la classe Game et affiche ses changements.
+ *
+ * Commentaire : Deux implémentations existent : TimerClock, utilisant un timer
+ *               Swing (mode par défaut), et GameLoop, utilisant un thread
+ *               dédié et un affichage actif (option -active).
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import java.awt.Component;
+
+/**
+ * La classe GameClock, base des horloges cadençant le jeu
+ */
+abstract class GameClock
+{
+    // Jeu appelé à chaque tour (par sa méthode actionPerformed())
+    protected Game game = null;
+
+    /**
+     * Définit le jeu appelé à chaque tour
+     */
+    public void setGame(final Game game)
+    {
+	this.game = game;
+    }
+
+    /**
+     * Démarre (ou redémarre) l'appel périodique de l'objet
+     */
+    abstract public void start();
+
+    /**
+     * Arrête l'appel de l'objet
+     */
+    abstract public void stop();
+
+    /**
+     * Arrête l'appel périodique de l'objet, qui sera appelé une seule fois
+     * après le délai indiqué en millisecondes
+     */
+    abstract public void sleep(final int time);
+
+    /**
+     * Indique si l'horloge redessine les personnages entre deux tours (voir
+     * Game.render()) ; ce n'est pas le cas par défaut
+     */
+    public boolean isInterpolated()
+    {
+	return false;
+    }
+
+    /**
+     * Affiche les zones modifiées du tampon double ; par défaut, le
+     * composant est simplement redessiné
+     */
+    public void update(final DirtyRegion dirty, final Component component)
+    {
+	dirty.flush(component);
+    }
+}
+
+// Fin du fichier
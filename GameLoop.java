@@ -0,0 +1,302 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : GameLoop.java
+ *
+ * Description : La classe GameLoop cadence le jeu dans un thread dédié, avec
+ *               un pas de temps fixe mesuré par System.nanoTime(), et affiche
+ *               chaque image par échange de tampons (BufferStrategy).
+ *
+ * Commentaire : Le timer Swing, exécuté dans le thread des événements,
+ *               regroupe les appels et dérive lorsque la machine est chargée.
+ *               Ici, un retard est rattrapé en enchaînant les tours sans
+ *               afficher les images intermédiaires. Le thread et les méthodes
+ *               de la classe Game se synchronisent sur l'objet Game lui-même.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import java.awt.Canvas;
+import java.awt.Component;
+import java.awt.DisplayMode;
+import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.event.ActionEvent;
+import java.awt.image.BufferStrategy;
+
+/**
+ * La classe GameLoop, horloge à boucle de jeu et affichage actif
+ */
+class GameLoop extends GameClock implements Runnable
+{
+    // États de la boucle
+    private static final int STOPPED = 0, RUNNING = 1, SLEEPING = 2;
+
+    // Au-delà de ce nombre de tours de retard, le retard est abandonné
+    private static final int MAX_LATE_TICKS = 5;
+
+    // Fréquence de rafraîchissement utilisée si celle de l'écran est
+    // inconnue
+    private static final int DEFAULT_REFRESH_RATE = 60;
+
+    // Durée d'un tour et d'une image en nanosecondes
+    private final long period, framePeriod;
+
+    // État de la boucle et dates de son prochain tour et de sa prochaine
+    // image (en nanosecondes)
+    private int     state = STOPPED;
+    private long    deadline, nextFrame;
+    private Thread  thread = null;
+    private boolean pending = false;
+
+    // Affichage : zone de dessin, tampon double à recopier et tampons
+    private final Canvas         canvas;
+    private final Image          buffer;
+    private       BufferStrategy strategy = null;
+
+    // Événement transmis à chaque tour
+    private final ActionEvent event;
+
+    // Statistiques : nombre d'images et de tours, durées entre deux images
+    // consécutives du jeu en cours (en nanosecondes), images en retard et
+    // tours abandonnés
+    private long frames = 0, ticks = 0, lastFrame = 0, intervals = 0;
+    private long totalTime = 0, minTime = Long.MAX_VALUE, maxTime = 0;
+    private long lateFrames = 0, skippedTicks = 0;
+
+    /**
+     * Constructeur ; le délai entre deux tours est en millisecondes
+     */
+    public GameLoop(final Canvas canvas, final Image buffer, final int delay)
+    {
+	this.canvas = canvas;
+	this.buffer = buffer;
+	period = delay * 1000000L;
+	event  = new ActionEvent(this, ActionEvent.ACTION_PERFORMED, null);
+
+	// Fréquence de rafraîchissement de l'écran
+	int rate = DisplayMode.REFRESH_RATE_UNKNOWN;
+	if (!GraphicsEnvironment.isHeadless())
+	    rate = GraphicsEnvironment.getLocalGraphicsEnvironment().
+		getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+	framePeriod = 1000000000L / (rate > 0 ? rate : DEFAULT_REFRESH_RATE);
+    }
+
+    /**
+     * Indique si les personnages sont redessinés entre deux tours, ce qui
+     * est le cas si l'écran est rafraîchi plus souvent que le jeu
+     */
+    public boolean isInterpolated()
+    {
+	return framePeriod < period;
+    }
+
+    /**
+     * Démarre (ou redémarre) la boucle
+     */
+    public void start()
+    {
+	synchronized (game) {
+	    state    = RUNNING;
+	    deadline  = System.nanoTime() + period;
+	    nextFrame = deadline - period + framePeriod;
+	    lastFrame = 0;
+	    wake();
+	}
+    }
+
+    /**
+     * Arrête la boucle
+     */
+    public void stop()
+    {
+	synchronized (game) {
+	    state = STOPPED;
+	    wake();
+	}
+    }
+
+    /**
+     * Endort le jeu : un seul tour aura lieu, après le délai indiqué
+     */
+    public void sleep(final int time)
+    {
+	synchronized (game) {
+	    state    = SLEEPING;
+	    deadline = System.nanoTime() + time * 1000000L;
+	    wake();
+	}
+    }
+
+    /**
+     * Réveille le thread de la boucle, en le créant si nécessaire
+     */
+    private void wake()
+    {
+	if (thread == null) {
+	    thread = new Thread(this, "Facman");
+	    thread.setDaemon(true);
+	    thread.start();
+	}
+	game.notifyAll();
+    }
+
+    /**
+     * Affiche le tampon double ; pendant un tour, l'affichage est reporté
+     * à la fin de celui-ci
+     */
+    public void update(final DirtyRegion dirty, final Component component)
+    {
+	dirty.clear();
+	if (Thread.currentThread() == thread)
+	    pending = true;
+	else
+	    present();
+    }
+
+    /**
+     * Boucle de jeu : les tours ont lieu à intervalle fixe et, entre deux
+     * tours, les personnages sont redessinés à chaque rafraîchissement de
+     * l'écran
+     */
+    public void run()
+    {
+	synchronized (game) {
+	    while (true) {
+		final long now = System.nanoTime();
+
+		// Attente du prochain tour ou de la prochaine image
+		try {
+		    if (state == STOPPED) {
+			game.wait();
+			continue;
+		    }
+		    final long next = state != RUNNING ? deadline :
+			Math.min(deadline, nextFrame);
+		    if (now < next) {
+			final long time = next - now;
+			game.wait(time / 1000000, (int) (time % 1000000));
+			continue;
+		    }
+		} catch (InterruptedException e) { return; }
+
+		if (now >= deadline) {
+		    // Prochaine échéance : le sommeil ne dure qu'un tour, et
+		    // un retard trop important est abandonné
+		    if (state == SLEEPING)
+			state = STOPPED;
+		    else if (now - deadline > MAX_LATE_TICKS * period) {
+			skippedTicks += (now - deadline) / period;
+			deadline = now + period;
+		    } else
+			deadline += period;
+
+		    // Tour de jeu
+		    ticks++;
+		    game.actionPerformed(event);
+		    nextFrame = now + framePeriod;
+		} else {
+		    // Image intermédiaire, à la fraction écoulée du tour
+		    game.render((int) ((now - deadline + period) *
+				       Character.ALPHA_ONE / period));
+		    nextFrame += framePeriod;
+		    if (nextFrame <= now)
+			nextFrame = now + framePeriod;
+		}
+
+		// Affichage, sauf si le tour suivant est déjà en retard
+		if (pending && (state != RUNNING ||
+				System.nanoTime() < deadline)) {
+		    pending = false;
+		    present();
+		}
+	    }
+	}
+    }
+
+    /**
+     * Recopie le tampon double dans le tampon d'arrière-plan et échange les
+     * tampons
+     */
+    private void present()
+    {
+	// Les tampons ne peuvent être créés qu'une fois la fenêtre affichée
+	if (strategy == null) {
+	    if (!canvas.isDisplayable()) {
+		canvas.repaint();
+		return;
+	    }
+	    canvas.createBufferStrategy(2);
+	    strategy = canvas.getBufferStrategy();
+	}
+
+	// Recopie, recommencée si le contenu des tampons a été perdu
+	do {
+	    do {
+		final Graphics gc = strategy.getDrawGraphics();
+		gc.drawImage(buffer, 0, 0, null);
+		gc.dispose();
+	    } while (strategy.contentsRestored());
+	    strategy.show();
+	} while (strategy.contentsLost());
+	Toolkit.getDefaultToolkit().sync();
+
+	// Statistiques
+	final long now = System.nanoTime();
+	if (lastFrame != 0 && state == RUNNING) {
+	    final long time = now - lastFrame;
+	    intervals++;
+	    totalTime += time;
+	    if (time < minTime)
+		minTime = time;
+	    if (time > maxTime)
+		maxTime = time;
+	    if (time > Math.min(period, framePeriod) * 3 / 2)
+		lateFrames++;
+	}
+	lastFrame = now;
+	frames++;
+    }
+
+    /**
+     * Obtient un résumé des statistiques de cadencement des images
+     */
+    public String getStatistics()
+    {
+	synchronized (game) {
+	    return frames + " images, " + ticks + " tours, " +
+		skippedTicks + " tours abandonnés, " + lateFrames +
+		" images en retard ; durée entre deux images : " +
+		(intervals == 0 ? "-" :
+		 "moyenne " + totalTime / intervals / 1000 + " µs, min " +
+		 minTime / 1000 + " µs, max " + maxTime / 1000 + " µs");
+	}
+    }
+}
+
+// Fin du fichier
@@ -0,0 +1,95 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : GameRandom.java
+ *
+ * Description : La classe GameRandom fournit les nombres pseudo-aléatoires
+ *               d'une partie à partir d'une graine.
+ *
+ * Commentaire : Même générateur que java.util.Random, mais dont l'état peut
+ *               être lu et restauré : une partie rejouée ou ramenée en arrière
+ *               (voir Recording et History) retrouve exactement les mêmes
+ *               tirages.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+/**
+ * La classe GameRandom, générateur congruentiel linéaire dont l'état tient
+ * dans un entier long
+ */
+final class GameRandom
+{
+    // Paramètres du générateur (ceux de java.util.Random)
+    private static final long MULTIPLIER = 0x5DEECE66DL, ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    // État courant
+    private long state;
+
+    /**
+     * Constructeur à partir d'une graine
+     */
+    public GameRandom(final long seed)
+    {
+	setSeed(seed);
+    }
+
+    /**
+     * Réinitialise le générateur à partir d'une graine
+     */
+    public void setSeed(final long seed)
+    {
+	state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * Obtient l'état courant, pour le restaurer plus tard avec setState()
+     */
+    public long getState()
+    {
+	return state;
+    }
+
+    /**
+     * Restaure un état obtenu par getState()
+     */
+    public void setState(final long state)
+    {
+	this.state = state & MASK;
+    }
+
+    /**
+     * Tire un entier entre 0 (inclus) et bound (exclu)
+     */
+    public int nextInt(final int bound)
+    {
+	state = (state * MULTIPLIER + ADDEND) & MASK;
+	return (int) ((bound * (state >>> 17)) >>> 31);
+    }
+}
+
+// Fin du fichier
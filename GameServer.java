@@ -0,0 +1,570 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : GameServer.java
+ *
+ * Description : La classe GameServer fait jouer les parties de nombreux
+ *               clients sur le serveur, qui seul applique les règles du jeu,
+ *               et leur envoie l'état obtenu à chaque tour.
+ *
+ * Commentaire : Un seul thread surveille toutes les connexions avec un
+ *               sélecteur NIO, sans jamais bloquer ; à chaque période de
+ *               l'horloge du jeu, les parties sont jouées en parallèle par
+ *               lots (voir TickScheduler).
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * La classe GameServer, serveur de parties faisant autorité : chaque client
+ * n'envoie que ses touches, la partie est jouée par une simulation du
+ * serveur et l'état obtenu à la fin de chaque tour est renvoyé au client,
+ * qui ne fait que l'afficher (voir GameClient)
+ */
+class GameServer
+{
+    // Port d'écoute par défaut et nombre de connexions en attente
+    // d'acceptation
+    static         final int DEFAULT_PORT = 4242;
+    private static final int BACKLOG = 1024;
+
+    // Protocole : le client envoie MAGIC puis la difficulté choisie (deux
+    // entiers), le serveur répond MAGIC puis son nombre de niveaux. Le
+    // client envoie ensuite un octet à chaque changement : les touches de
+    // direction enfoncées (KEYS, bit n pour la direction n) et PAUSED si
+    // le jeu est en pause chez lui. Le serveur envoie un enregistrement de
+    // FRAME_SIZE entiers par tour joué : les événements du tour (voir
+    // Simulation), la case de la pastille mangée (FRAME_GUM_X vaut -1 si
+    // aucune), puis l'état de la simulation à la fin du tour (voir
+    // Simulation.saveState()). Rien n'est envoyé tant que le joueur n'a
+    // pas commencé à jouer.
+    static final int MAGIC = 0x464e4554; // "FNET"
+    static final int KEYS = 0x0f, PAUSED = 0x10;
+    static final int FRAME_EVENTS = 0, FRAME_GUM_X = 1, FRAME_GUM_Y = 2;
+    static final int FRAME_STATE = 3;
+    static final int FRAME_SIZE = FRAME_STATE + Simulation.STATE_SIZE;
+    static final int FRAME_BYTES = FRAME_SIZE * 4;
+
+    // Nombre de tours d'attente après une vie perdue ou un niveau gagné
+    // (deux secondes, comme Game)
+    private static final int SLEEP_TICKS = 2000 / Game.DELAY;
+
+    // Nombre de tours en attente d'envoi à un client au-delà duquel il est
+    // déconnecté, faute de lire assez vite
+    private static final int MAX_PENDING_FRAMES = 16;
+
+    // Nombre de tours accordés à un client pour lire les derniers tours
+    // d'une partie terminée avant d'être déconnecté (deux secondes)
+    private static final int DRAIN_TICKS = 2000 / Game.DELAY;
+
+    // Délai accordé à un client pour envoyer son message de bienvenue
+    // après la connexion, en nanosecondes (cinq secondes)
+    private static final long HELLO_TIMEOUT = 5000 * 1000000L;
+
+    // Intervalle d'affichage des statistiques, en tours (dix secondes)
+    private static final int STATS_TICKS = 10000 / Game.DELAY;
+
+    // Sélecteur et connexion d'écoute
+    private final Selector            selector;
+    private final ServerSocketChannel server;
+
+    // Grille dont les niveaux sont partagés par toutes les parties
+    private final Board levels;
+
+    // Parties commencées et connexions dont la partie n'a pas encore
+    // commencé (objets Session), graine de la prochaine partie et tampon
+    // de lecture, commun à toutes les parties
+    private final ArrayList  sessions = new ArrayList();
+    private final ArrayList  waiting = new ArrayList();
+    private       long       seed = System.currentTimeMillis();
+    private final ByteBuffer input = ByteBuffer.allocate(256);
+
+    // Horloge commune : à chaque tour, toutes les parties sont jouées par
+    // lots en parallèle (voir TickScheduler)
+    private final TickScheduler scheduler =
+	new TickScheduler(Game.DELAY * 1000000L);
+
+    // Enregistrement du tour à envoyer, propre à chaque thread du pool
+    private static final ThreadLocal FRAME = new ThreadLocal() {
+	    protected Object initialValue()
+	    {
+		return new int[FRAME_SIZE];
+	    }
+	};
+
+    // Statistiques depuis le dernier affichage : tours joués et connexions
+    // refusées par délestage
+    private int ticks = 0, refused = 0;
+
+    /**
+     * Partie d'un client : sa connexion, sa simulation et les tours pas
+     * encore envoyés. La session fournit à la simulation les dernières
+     * touches reçues.
+     */
+    private static class Session implements Controller, TickScheduler.Task
+    {
+	// Connexion, message de bienvenue en cours de lecture et tours en
+	// attente d'envoi ; ce tampon est hors du tas, ce qui évite une
+	// recopie à chaque écriture
+	final SocketChannel channel;
+	final SelectionKey  key;
+	final ByteBuffer    hello = ByteBuffer.allocate(8);
+	final ByteBuffer    output =
+	    ByteBuffer.allocateDirect(MAX_PENDING_FRAMES * FRAME_BYTES);
+
+	// Heure de la connexion (System.nanoTime())
+	final long accepted = System.nanoTime();
+
+	// Difficulté reçue (-1 tant que le message de bienvenue n'est pas
+	// complet), simulation, créée une fois le premier niveau prêt, et
+	// indice de la partie dans la liste des parties commencées
+	int        difficulty = -1;
+	Simulation simulation = null;
+	int        index = -1;
+
+	// Dernier message reçu du client, tours d'attente restants après une
+	// vie perdue ou un niveau gagné, tours écoulés depuis la fin de la
+	// partie, fermeture une fois les derniers tours envoyés, et fermeture
+	// immédiate (connexion perdue ou client trop en retard)
+	int     keys = 0, sleep = 0, drain = 0;
+	boolean paused = false, closing = false, dropped = false;
+
+	Session(final SocketChannel channel, final SelectionKey key)
+	{
+	    this.channel = channel;
+	    this.key     = key;
+	}
+
+	public int getKeys(final Simulation simulation)
+	{
+	    return keys;
+	}
+
+	/**
+	 * Joue un tour de la partie et en envoie l'état au client ; appelée
+	 * en parallèle pour toutes les parties, elle ne modifie que la
+	 * session et laisse la fermeture de la connexion au thread du
+	 * sélecteur (voir update())
+	 */
+	public void tick()
+	{
+	    // Partie terminée : un client qui ne lit plus les derniers tours
+	    // est déconnecté
+	    if (closing) {
+		if (output.position() > 0 && ++drain > DRAIN_TICKS)
+		    dropped = true;
+		return;
+	    }
+	    if (paused)
+		return;
+
+	    // Attente après une vie perdue ou un niveau gagné, puis niveau
+	    // suivant, nouvelle vie ou fin de la partie
+	    if (sleep > 0) {
+		if (--sleep == 0 && !simulation.endLevel())
+		    closing = true;
+		return;
+	    }
+
+	    final int events = simulation.step();
+	    if (events == Simulation.EVENT_WAITING)
+		return;
+	    if ((events & (Simulation.EVENT_WON |
+			   Simulation.EVENT_EATEN)) != 0)
+		sleep = SLEEP_TICKS;
+	    send(events);
+	}
+
+	/**
+	 * Envoie au client le tour qui vient d'être joué ; un client qui a
+	 * trop de tours en retard est déconnecté
+	 */
+	private void send(final int events)
+	{
+	    if (output.remaining() < FRAME_BYTES) {
+		closing = dropped = true;
+		return;
+	    }
+
+	    final int[]  frame = (int[]) FRAME.get();
+	    final Pacman pacman = simulation.getPacman();
+	    frame[FRAME_EVENTS] = events;
+	    if (pacman.getEatenGum() != Board.BOX_EMPTY) {
+		frame[FRAME_GUM_X] = pacman.getBoxPosition().x;
+		frame[FRAME_GUM_Y] = pacman.getBoxPosition().y;
+	    } else
+		frame[FRAME_GUM_X] = frame[FRAME_GUM_Y] = -1;
+	    simulation.saveState(frame, FRAME_STATE);
+
+	    for (int i = 0; i < FRAME_SIZE; i++)
+		output.putInt(frame[i]);
+	    write();
+	}
+
+	/**
+	 * Envoie ce que la connexion peut accepter sans bloquer
+	 */
+	void write()
+	{
+	    try {
+		output.flip();
+		channel.write(output);
+		output.compact();
+	    } catch (IOException e) {
+		closing = dropped = true;
+	    }
+	}
+    }
+
+    /**
+     * Constructeur : écoute sur le port indiqué ; les niveaux de la grille
+     * doivent avoir été recensés
+     */
+    public GameServer(final int port, final Board levels) throws IOException
+    {
+	this.levels = levels;
+	selector = Selector.open();
+	server = ServerSocketChannel.open();
+	server.configureBlocking(false);
+	server.bind(new InetSocketAddress(port), BACKLOG);
+	server.register(selector, SelectionKey.OP_ACCEPT);
+	scheduler.register();
+    }
+
+    /**
+     * Boucle du serveur : traite les événements réseau jusqu'au prochain
+     * tour, puis fait jouer un tour à toutes les parties ; ne se termine
+     * pas
+     */
+    public void run() throws IOException
+    {
+	while (true) {
+	    // Attente des événements réseau jusqu'au prochain tour
+	    final long wait = scheduler.getDelay();
+	    if (wait > 0)
+		selector.select(Math.max(wait / 1000000, 1));
+	    else
+		selector.selectNow();
+
+	    final Iterator it = selector.selectedKeys().iterator();
+	    while (it.hasNext()) {
+		final SelectionKey key = (SelectionKey) it.next();
+		it.remove();
+		if (!key.isValid())
+		    continue;
+		if (key.isAcceptable())
+		    accept();
+		else {
+		    final Session session = (Session) key.attachment();
+		    if (key.isReadable())
+			read(session);
+		    if (key.isValid() && key.isWritable())
+			flush(session);
+		}
+	    }
+
+	    // Tours dus de toutes les parties, puis fermetures et attentes
+	    // d'écriture, réservées au thread du sélecteur ; le parcours est
+	    // à rebours car une partie fermée est remplacée par la dernière
+	    final int slots = scheduler.runDueSlots(sessions);
+	    if (slots > 0) {
+		serveWaiting();
+		for (int i = sessions.size() - 1; i >= 0; i--)
+		    update((Session) sessions.get(i));
+		if ((ticks += slots) >= STATS_TICKS)
+		    printStatistics();
+	    }
+	}
+    }
+
+    /**
+     * Accepte les nouvelles connexions
+     */
+    private void accept() throws IOException
+    {
+	SocketChannel channel;
+
+	while ((channel = server.accept()) != null) {
+	    // Délestage : les nouveaux clients sont refusés tant que les tours
+	    // prennent trop de temps
+	    if (scheduler.isOverloaded()) {
+		channel.close();
+		refused++;
+		continue;
+	    }
+
+	    channel.configureBlocking(false);
+	    channel.socket().setTcpNoDelay(true);
+	    final SelectionKey key = channel.register(selector,
+						      SelectionKey.OP_READ);
+	    final Session session = new Session(channel, key);
+	    key.attach(session);
+	    waiting.add(session);
+	}
+    }
+
+    /**
+     * Commence les parties des clients dont le message de bienvenue est
+     * arrivé, une fois le premier niveau prêt ; ferme les connexions dont
+     * le message n'est pas arrivé à temps, et oublie celles dont la partie
+     * a commencé ou qui sont fermées. Le premier niveau est préparé par le
+     * thread de LevelCache, le thread du sélecteur ne l'attend jamais.
+     */
+    private void serveWaiting()
+    {
+	final long    now = System.nanoTime();
+	final boolean ready = levels.isLevelReady(0);
+
+	for (int i = waiting.size() - 1; i >= 0; i--) {
+	    final Session session = (Session) waiting.get(i);
+	    if (session.simulation == null && session.key.isValid()) {
+		if (session.difficulty >= 0) {
+		    if (!ready)
+			continue;
+		    start(session);
+		} else if (now - session.accepted < HELLO_TIMEOUT)
+		    continue;
+		else
+		    close(session);
+	    }
+
+	    // Retrait, la dernière connexion prenant la place de celle-ci
+	    final Object last = waiting.remove(waiting.size() - 1);
+	    if (i < waiting.size())
+		waiting.set(i, last);
+	}
+    }
+
+    /**
+     * Lit les messages reçus d'un client : le message de bienvenue, puis
+     * les touches et l'état de la pause, dont seul le dernier compte
+     */
+    private void read(final Session session)
+    {
+	try {
+	    // Bienvenue : la partie commencera une fois la difficulté reçue
+	    if (session.simulation == null) {
+		if (session.channel.read(session.hello) < 0)
+		    close(session);
+		else if (!session.hello.hasRemaining())
+		    welcome(session);
+		return;
+	    }
+
+	    input.clear();
+	    final int count = session.channel.read(input);
+	    if (count < 0) {
+		close(session);
+		return;
+	    }
+	    if (count > 0) {
+		final int message = input.get(count - 1);
+		session.keys   = message & KEYS;
+		session.paused = (message & PAUSED) != 0;
+	    }
+	} catch (IOException e) {
+	    close(session);
+	}
+    }
+
+    /**
+     * Vérifie le message de bienvenue d'un client et le déconnecte s'il
+     * n'est pas valide ; sinon, plus rien n'est lu jusqu'au début de la
+     * partie (voir serveWaiting())
+     */
+    private void welcome(final Session session)
+    {
+	session.hello.flip();
+	final int magic = session.hello.getInt();
+	final int difficulty = session.hello.getInt();
+	if (magic != MAGIC || difficulty < 0 ||
+	    difficulty >= HomeScreen.CHOICES.length) {
+	    close(session);
+	    return;
+	}
+
+	session.difficulty = difficulty;
+	session.key.interestOps(0);
+    }
+
+    /**
+     * Commence la partie d'un client, le premier niveau étant prêt
+     */
+    private void start(final Session session)
+    {
+	// Simulation jouant les niveaux partagés
+	final Simulation simulation = new Simulation(new Board(levels));
+	simulation.setController(session);
+	simulation.setDifficulty(session.difficulty);
+	simulation.setSeed(seed++);
+	simulation.resetGame();
+	try {
+	    if (!simulation.nextLevel()) {
+		close(session);
+		return;
+	    }
+	} catch (IllegalStateException e) {
+	    // Niveau illisible
+	    close(session);
+	    return;
+	}
+	session.simulation = simulation;
+	session.index = sessions.size();
+	sessions.add(session);
+
+	// Réponse
+	session.output.putInt(MAGIC);
+	session.output.putInt(levels.getLevelCount());
+	flush(session);
+    }
+
+    /**
+     * Envoie ce que la connexion d'un client peut accepter sans bloquer,
+     * puis met à jour son état
+     */
+    private void flush(final Session session)
+    {
+	session.write();
+	update(session);
+    }
+
+    /**
+     * Ferme la connexion d'une partie perdue, ou terminée une fois ses
+     * derniers tours envoyés ; sinon, demande au sélecteur de signaler
+     * quand la connexion peut accepter les tours en attente. Le sélecteur
+     * n'est sollicité que si cet intérêt change.
+     */
+    private void update(final Session session)
+    {
+	final int pending = session.output.position();
+
+	if (session.dropped || session.closing && pending == 0)
+	    close(session);
+	else {
+	    final int ops = pending > 0 ?
+		SelectionKey.OP_READ | SelectionKey.OP_WRITE :
+		SelectionKey.OP_READ;
+	    if (session.key.interestOps() != ops)
+		session.key.interestOps(ops);
+	}
+    }
+
+    /**
+     * Ferme la connexion d'un client et retire sa partie de la liste
+     */
+    private void close(final Session session)
+    {
+	session.key.cancel();
+	try {
+	    session.channel.close();
+	} catch (IOException e) {
+	    // Connexion déjà perdue
+	}
+
+	if (session.index >= 0) {
+	    final Session last = (Session) sessions.remove(sessions.size() -
+							     1);
+	    if (last != session) {
+		sessions.set(session.index, last);
+		last.index = session.index;
+	    }
+	    session.index = -1;
+	}
+	if (session.simulation != null)
+	    session.simulation.getBoard().release();
+	session.closing = true;
+    }
+
+    /**
+     * Affiche le nombre de parties en cours, le retard et la durée des
+     * tours depuis le dernier affichage, puis remet les statistiques à
+     * zéro
+     */
+    private void printStatistics()
+    {
+	final TickHistogram lags = scheduler.getLags();
+	final TickHistogram durations = scheduler.getDurations();
+
+	System.out.println(sessions.size() + " partie(s) en cours ; " +
+			   "retard des tours : " + lags.getP50Micros() +
+			   " µs (médiane), " + lags.getP99Micros() +
+			   " µs (99 %), " + lags.getMaxMicros() +
+			   " µs (maximum) ; durée : " +
+			   durations.getMeanMicros() + " µs en moyenne, " +
+			   durations.getP99Micros() + " µs (99 %) ; " +
+			   scheduler.takeSkipped() +
+			   " tour(s) abandonné(s), " + refused +
+			   " connexion(s) refusée(s)" +
+			   (scheduler.isOverloaded() ? ", délestage" : ""));
+	lags.reset();
+	durations.reset();
+	ticks = refused = 0;
+    }
+
+    /**
+     * Lance le serveur : java GameServer [port]
+     */
+    public static void main(final String argv[])
+    {
+	int port = DEFAULT_PORT;
+	try {
+	    if (argv.length > 0)
+		port = Integer.parseInt(argv[0]);
+	} catch (NumberFormatException e) {
+	    port = -1;
+	}
+	if (argv.length > 1 || port < 0 || port > 65535) {
+	    System.err.println("Utilisation : java GameServer [port]");
+	    System.exit(2);
+	}
+
+	final Board levels = new Board();
+	levels.loadLevels();
+	try {
+	    final GameServer server = new GameServer(port, levels);
+	    System.out.println("Serveur à l'écoute sur le port " + port +
+			       ", " + levels.getLevelCount() +
+			       " niveau(x), " + server.scheduler.
+			       getParallelism() + " thread(s)");
+	    server.run();
+	} catch (IOException e) {
+	    System.err.println("Erreur du serveur : " + e.getMessage());
+	    System.exit(1);
+	}
+    }
+}
+
+// Fin du fichier
@@ -1,35 +1,35 @@
 /*
  * ---------------------------------------------------------------------------
  *
- * Facman -- Un clne de Pacman en Java
+ * Facman -- Un clône de Pacman en Java
  * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
  *
  * ---------------------------------------------------------------------------
  *
  * Fichier     : Ghost.java
  *
- * Description : La classe Ghost est drive de la classe Character. Elle gre
- *               tout ce qui est en rapport avec le dplacement,
- *               l'intelligence artificielle et l'affichage des fantmes.
+ * Description : La classe Ghost est dérivée de la classe Character. Elle gère
+ *               tout ce qui est en rapport avec le déplacement,
+ *               l'intelligence artificielle et l'affichage des fantômes.
  *
  * Commentaire : C'est dans ce fichier que se situe toute l'intelligence
- *               artificielle des fantmes, dans la mthode doMove().
+ *               artificielle des fantômes, dans la méthode doMove().
  *
  * ---------------------------------------------------------------------------
  *
  * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
- * modifier conformment aux dispositions de la Licence Publique Gnrale GNU,
- * telle que publie par la Free Software Foundation ; version 2 de la
- * licence, ou encore ( votre convenance) toute version ultrieure.
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
  *
- * Ce programme est distribu dans l'espoir qu'il sera utile, mais SANS AUCUNE
- * GARANTIE ; sans mme la garantie implicite de COMMERCIALISATION ou
- * D'ADAPTATION  UN OBJET PARTICULIER. Pour plus de dtail, voir la Licence
- * Publique Gnrale GNU.
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
  *
- * Vous devez avoir reu un exemplaire de la Licence Publique Gnrale GNU en
- * mme temps que ce programme ; si ce n'est pas le cas, crivez  la Free
- * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, tats-Unis.
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
  *
  * ---------------------------------------------------------------------------
  */
@@ -40,7 +40,7 @@ import java.awt.Graphics;
 import java.awt.Image;
 
 /**
- * La classe Ghost, grant les fantmes avec leur intelligence artificielle et
+ * La classe Ghost, gérant les fantômes avec leur intelligence artificielle et
  * leur affichage
  */
 class Ghost extends Character
@@ -51,20 +51,26 @@ class Ghost extends Character
     private        final Image[][] images;
     private              int       image  = 0;
 
-    // tat du fantme
+    // État du fantôme ; STATE_SIZE est le nombre d'entiers nécessaires
+    // pour l'enregistrer (voir saveState())
     private static final int     MAX_FEAR_LENGTH = 300;
+    static         final int     STATE_SIZE = Character.STATE_SIZE + 1;
     private              boolean dead, afraid;
     private              int     fearLength;
 
-    // Variables relatives  l'animation
+    // Variables relatives à l'animation
     private static final int ANIM_FREEZE = 2;
     private              int anim        = 0;
 
-    // Variables utilises pour le calcul de la direction dans doMove()
-    private static final int X1 = 0, X2 = 3, Y1 = 1, Y2 = 2;
+    // Variables utilisées pour le calcul de la direction dans doMove() ;
+    // le tableau est réutilisé d'un appel à l'autre
+    private static final int   X1 = 0, X2 = 3, Y1 = 1, Y2 = 2;
+    private        final int[] dirs = new int[NB_DIRS];
 
-    // Niveau de difficult
-    private int difficulty = 1;
+    // Niveau de difficulté, et tirages aléatoires du niveau 0, partagés
+    // avec la simulation (voir Simulation.setSeed())
+    private int        difficulty = 1;
+    private GameRandom random = new GameRandom(0);
 
     // Objets auxiliaires
     private final Pacman pacman;
@@ -87,6 +93,16 @@ class Ghost extends Character
 	    fearImages = loader.load("ghosta", IMAGES, NB_DIRS);
     }
 
+    /**
+     * Constructeur de la classe Ghost sans affichage
+     */
+    public Ghost(final Board board, final Pacman pacman)
+    {
+	super(board, DEFAULT_ANIM_OFFSET / 2);
+	this.pacman = pacman;
+	images = null;
+    }
+
     /**
      * Initialise la position
      */
@@ -96,19 +112,27 @@ class Ghost extends Character
     }
 
     /**
-     * Dfinit le niveau de difficult
+     * Définit le niveau de difficulté
      */
     public void setDifficulty(final int difficulty)
     {
 	this.difficulty = difficulty;
 
-	// Mise  jour de la vitesse du fantme
+	// Mise à jour de la vitesse du fantôme
 	moves = Position.makeDirs(difficulty <= 1 ? DEFAULT_ANIM_OFFSET / 2 :
 				  DEFAULT_ANIM_OFFSET);
     }
 
     /**
-     * Dessine le fantme
+     * Définit le générateur utilisé pour les tirages aléatoires
+     */
+    public void setRandom(final GameRandom random)
+    {
+	this.random = random;
+    }
+
+    /**
+     * Dessine le fantôme
      */
     public void draw(final Graphics gc)
     {
@@ -116,35 +140,47 @@ class Ghost extends Character
 	if (dead)
 	    return;
 
-	// Si la direction n'est pas encore dfinie, prend la premire
-	final int dir = lastDir >= 0 ? lastDir : 0;
-
-	// Teste si on a assez attendu pour passer  l'image suivante
+	// Teste si on a assez attendu pour passer à l'image suivante
 	if (++anim == ANIM_FREEZE) {
-	    // Met  zro le compteur
+	    // Met à zéro le compteur
 	    anim = 0;
 
-	    // Slectionne la prochaine image de l'animation
+	    // Sélectionne la prochaine image de l'animation
 	    if (image < IMAGES - 1)
 		image++;
 	    else
 		image = 0;
 	}
 
-	// Finalement, dessine l'image slectione
+	// Finalement, dessine l'image sélectionée
+	paint(gc);
+    }
+
+    /**
+     * Dessine le fantôme sans l'animer
+     */
+    public void paint(final Graphics gc)
+    {
+	// N'affiche que s'il est "vivant"
+	if (dead)
+	    return;
+
+	// Si la direction n'est pas encore définie, prend la première
+	final int dir = lastDir >= 0 ? lastDir : 0;
+
 	board.drawImage(gc, ((afraid && (fearLength >= 64 ||
 					 ((fearLength / 8) % 2) == 0)) ?
-			     fearImages : images)[dir][image], pos);
+			     fearImages : images)[dir][image], drawPos);
     }
 
     /**
-     * Mthode appele rgulirement pour ventuellement effectuer un
-     * mouvement et mettre  jour les variables de position ; c'est de cette
-     * mthode que dpend l'intelligence artificielle
+     * Méthode appelée régulièrement pour éventuellement effectuer un
+     * mouvement et mettre à jour les variables de position ; c'est de cette
+     * méthode que dépend l'intelligence artificielle
      */
     public void doMove()
     {
-	// Ne dplace que s'il est "vivant"
+	// Ne déplace que s'il est "vivant"
 	if (dead)
 	    return;
 
@@ -153,34 +189,60 @@ class Ghost extends Character
 	    move(lastDir);
 	else {
 	    final int oppDir = oppositeDir(lastDir);
-	    final int[] dirs = new int[NB_DIRS];
 	    int dir;
 
 	    if (difficulty == 0) {
 		int totalDirs = 0;
 
-		// Slectionne les directions possibles en vitant de
-		// retourner en arrire (direction oppose)
+		// Sélectionne les directions possibles en évitant de
+		// retourner en arrière (direction opposée)
 		for (dir = 0; dir < NB_DIRS; dir++)
 		    if (dir != oppDir && canMove(dir))
 			dirs[totalDirs++] = dir;
 
 		if (totalDirs == 1)
-		    // Slectionne la seule direction possible
+		    // Sélectionne la seule direction possible
 		    dir = dirs[0];
 		else if (totalDirs > 0)
-		    // Slectionne une direction au hasard si c'est possible
-		    dir = dirs[(int) (Math.random() * totalDirs)];
+		    // Sélectionne une direction au hasard si c'est possible
+		    dir = dirs[random.nextInt(totalDirs)];
 		else if (canMove(oppDir))
-		    // Sinon il faut retourner en arrire
+		    // Sinon il faut retourner en arrière
 		    dir = oppDir;
 		else
 		    // Aucun mouvement n'est possible
 		    return;
+	    } else if (difficulty == 3) {
+		final Position  pacmanPos = pacman.getBoxPosition();
+		final FlowField field = board.getFlowField();
+
+		// Le champ de directions vers Pacman (voir FlowField), commun
+		// à tous les fantômes, n'est recalculé que si Pacman a changé
+		// de case
+		field.setRoot(pacmanPos.x, pacmanPos.y);
+
+		// Suit le plus court chemin vers Pacman, ou s'en éloigne le
+		// plus possible sans revenir en arrière si le fantôme est
+		// effrayé
+		if (!afraid)
+		    dir = field.getDir(boxPos.x, boxPos.y);
+		else
+		    dir = field.getFleeDir(boxPos.x, boxPos.y, oppDir);
+
+		if (dir < 0) {
+		    if (canMove(lastDir))
+			dir = lastDir;
+		    else if (canMove(oppDir))
+			// Il faut retourner en arrière
+			dir = oppDir;
+		    else
+			// Aucune direction
+			return;
+		}
 	    } else {
 		final Position pacmanPos = pacman.getPosition();
 
-		// Dplacement en X
+		// Déplacement en X
 		if (pos.x < pacmanPos.x) {
 		    dirs[X1] = RIGHT;
 		    dirs[X2] = LEFT;
@@ -189,7 +251,7 @@ class Ghost extends Character
 		    dirs[X2] = RIGHT;
 		}
 
-		// Dplacement en Y
+		// Déplacement en Y
 		if (pos.y < pacmanPos.y) {
 		    dirs[Y1] = DOWN;
 		    dirs[Y2] = UP;
@@ -198,8 +260,8 @@ class Ghost extends Character
 		    dirs[Y2] = DOWN;
 		}
 
-		// Suivant la distance par rapport  Pacman et X et en Y,
-		// inverse les dplacements en X ou en Y
+		// Suivant la distance par rapport à Pacman et X et en Y,
+		// inverse les déplacements en X ou en Y
 		if (Math.abs(pos.x - pacmanPos.x) <
 		    Math.abs(pos.y - pacmanPos.y)) {
 		    dir = dirs[X1];
@@ -211,7 +273,7 @@ class Ghost extends Character
 		    dirs[Y2] = dir;
 		}
 
-		// Si le fantme est effray, inverse le sens de chaque
+		// Si le fantôme est effrayé, inverse le sens de chaque
 		// direction
 		if (afraid) {
 		    dir = dirs[X1];
@@ -223,8 +285,8 @@ class Ghost extends Character
 		    dirs[Y2] = dir;
 		}
 
-		// Slectionne la premire direction possible en vitant de
-		// revenir en arrire
+		// Sélectionne la première direction possible en évitant de
+		// revenir en arrière
 		for (dir = 0; dir < NB_DIRS; dir++)
 		    if (dirs[dir] != oppDir && canMove(dirs[dir])) {
 			dir = dirs[dir];
@@ -235,7 +297,7 @@ class Ghost extends Character
 		    if (canMove(lastDir))
 			dir = lastDir;
 		    else if (canMove(oppDir))
-			// Il faut retourner en arrire
+			// Il faut retourner en arrière
 			dir = oppDir;
 		    else
 			// Aucune direction
@@ -247,7 +309,7 @@ class Ghost extends Character
 	    move(dir);
 	}
 
-	// Rduction du dlai de la peur
+	// Réduction du délai de la peur
 	if (fearLength > 0)
 	    fearLength--;
 	else {
@@ -256,7 +318,31 @@ class Ghost extends Character
     }
 
     /**
-     * Fait "mourir" le fantme
+     * Enregistre l'état du fantôme : celui du personnage, puis son état et
+     * la durée restante de sa peur réunis en un entier
+     */
+    int saveState(final int[] state, int index)
+    {
+	index = super.saveState(state, index);
+	state[index++] = fearLength << 2 | (afraid ? 2 : 0) | (dead ? 1 : 0);
+	return index;
+    }
+
+    /**
+     * Restaure un état enregistré par saveState()
+     */
+    int restoreState(final int[] state, int index)
+    {
+	index = super.restoreState(state, index);
+	final int flags = state[index++];
+	fearLength = flags >> 2;
+	afraid     = (flags & 2) != 0;
+	dead       = (flags & 1) != 0;
+	return index;
+    }
+
+    /**
+     * Fait "mourir" le fantôme
      */
     public void die()
     {
@@ -264,7 +350,7 @@ class Ghost extends Character
     }
 
     /**
-     * Fait "revivre" le fantme
+     * Fait "revivre" le fantôme
      */
     public void undie()
     {
@@ -274,7 +360,7 @@ class Ghost extends Character
     }
 
     /**
-     * Retourne l'tat du fantme ("mort" ou "vivant")
+     * Retourne l'état du fantôme ("mort" ou "vivant")
      */
     public boolean isDead()
     {
@@ -282,7 +368,7 @@ class Ghost extends Character
     }
 
     /**
-     * Rend le fantme appeur (Pacman mange une super-pastille)
+     * Rend le fantôme appeuré (Pacman mange une super-pastille)
      */
     public void fear()
     {
@@ -293,7 +379,7 @@ class Ghost extends Character
     }
 
     /**
-     * Permet de savoir si le fantme est appeur
+     * Permet de savoir si le fantôme est appeuré
      */
     public boolean isAfraid()
     {
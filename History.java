@@ -0,0 +1,137 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : History.java
+ *
+ * Description : La classe History conserve l'état de la partie pour chacun des
+ *               derniers tours joués, et permet de revenir à l'un d'eux.
+ *
+ * Commentaire : Les états sont enregistrés dans un tableau alloué une fois
+ *               pour toutes, utilisé comme un tampon circulaire : enregistrer
+ *               un tour ou revenir en arrière n'alloue rien.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+/**
+ * La classe History, tampon circulaire des états de la partie au début de
+ * chacun des derniers tours
+ */
+class History
+{
+    // Contenu de chaque enregistrement : la case de la pastille mangée
+    // pendant le tour (GUM_X vaut -1 si aucune), puis l'état de la
+    // simulation au début du tour (voir Simulation.saveState())
+    private static final int GUM_X = 0, GUM_Y = 1, STATE = 2;
+    private static final int RECORD_SIZE = STATE + Simulation.STATE_SIZE;
+
+    // Enregistrements, nombre maximal et nombre courant d'enregistrements,
+    // et indice du prochain enregistrement
+    private final int[] records;
+    private final int   capacity;
+    private       int   size = 0, head = 0;
+
+    /**
+     * Constructeur : conserve au plus le nombre de tours indiqué
+     */
+    public History(final int capacity)
+    {
+	if (capacity <= 0)
+	    throw new IllegalArgumentException("Capacité invalide : " +
+					       capacity);
+	this.capacity = capacity;
+	records = new int[capacity * RECORD_SIZE];
+    }
+
+    /**
+     * Oublie tous les tours enregistrés
+     */
+    public void clear()
+    {
+	size = head = 0;
+    }
+
+    /**
+     * Obtient le nombre de tours vers lesquels il est possible de revenir
+     */
+    public int getSize()
+    {
+	return size;
+    }
+
+    /**
+     * Enregistre l'état de la simulation au début d'un tour ; le plus
+     * ancien enregistrement est écrasé si le tampon est plein
+     */
+    public void save(final Simulation simulation)
+    {
+	final int base = head * RECORD_SIZE;
+
+	records[base + GUM_X] = -1;
+	simulation.saveState(records, base + STATE);
+	head = (head + 1) % capacity;
+	if (size < capacity)
+	    size++;
+    }
+
+    /**
+     * Note la case de la pastille mangée pendant le dernier tour enregistré
+     */
+    public void setEatenGum(final Position pos)
+    {
+	final int base = (head + capacity - 1) % capacity * RECORD_SIZE;
+
+	records[base + GUM_X] = pos.x;
+	records[base + GUM_Y] = pos.y;
+    }
+
+    /**
+     * Revient au début du tour enregistré ticks tours plus tôt (ou au plus
+     * ancien s'il y en a moins) : les pastilles mangées depuis sont remises
+     * en place, puis l'état de la simulation est restauré. Les tours
+     * suivants sont oubliés ; retourne le nombre de tours annulés.
+     */
+    public int rewind(final Simulation simulation, int ticks)
+    {
+	final Board board = simulation.getBoard();
+	int         base = 0;
+
+	ticks = Math.min(ticks, size);
+	for (int i = 0; i < ticks; i++) {
+	    head = (head + capacity - 1) % capacity;
+	    base = head * RECORD_SIZE;
+	    if (records[base + GUM_X] >= 0)
+		board.restoreGum(records[base + GUM_X], records[base + GUM_Y]);
+	}
+
+	if (ticks > 0)
+	    simulation.restoreState(records, base + STATE);
+	size -= ticks;
+	return ticks;
+    }
+}
+
+// Fin du fichier
@@ -1,33 +1,33 @@
 /*
  * ---------------------------------------------------------------------------
  *
- * Facman -- Un clne de Pacman en Java
+ * Facman -- Un clône de Pacman en Java
  * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
  *
  * ---------------------------------------------------------------------------
  *
  * Fichier     : HomeScreen.java
  *
- * Description : La classe HomeScreen implmente un cran d'accueil.
+ * Description : La classe HomeScreen implémente un écran d'accueil.
  *
- * Commentaire : Ceci est le premier cran du jeu  tre affich. Il propose 
- *               l'utilisateur de choisir son niveau de difficult.
+ * Commentaire : Ceci est le premier écran du jeu à être affiché. Il propose à
+ *               l'utilisateur de choisir son niveau de difficulté.
  *
  * ---------------------------------------------------------------------------
  *
  * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
- * modifier conformment aux dispositions de la Licence Publique Gnrale GNU,
- * telle que publie par la Free Software Foundation ; version 2 de la
- * licence, ou encore ( votre convenance) toute version ultrieure.
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
  *
- * Ce programme est distribu dans l'espoir qu'il sera utile, mais SANS AUCUNE
- * GARANTIE ; sans mme la garantie implicite de COMMERCIALISATION ou
- * D'ADAPTATION  UN OBJET PARTICULIER. Pour plus de dtail, voir la Licence
- * Publique Gnrale GNU.
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
  *
- * Vous devez avoir reu un exemplaire de la Licence Publique Gnrale GNU en
- * mme temps que ce programme ; si ce n'est pas le cas, crivez  la Free
- * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, tats-Unis.
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
  *
  * ---------------------------------------------------------------------------
  */
@@ -40,18 +40,20 @@ import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Font;
 import java.awt.Component;
+import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
 /**
- * La classe HomeScreen, qui affiche un cran d'accueil, avec dessus le
- * meilleur score atteint, et propose le choix de difficult  l'utilisateur
+ * La classe HomeScreen, qui affiche un écran d'accueil, avec dessus le
+ * meilleur score atteint, et propose le choix de difficulté à l'utilisateur
  */
 class HomeScreen implements KeyListener
 {
-    // Variables utilises pour les choix
-    private static final String[] CHOICES = {
-	"Facile", "Moyen", "Difficile" };
+    // Variables utilisées pour les choix ; le choix n correspond au niveau
+    // de difficulté n (voir Ghost.setDifficulty())
+    static         final String[] CHOICES = {
+	"Facile", "Moyen", "Difficile", "Expert" };
     private static final Color COLOR_BACKGROUND = Color.WHITE;
     private static final Color COLOR_TEXT       = Color.BLACK;
     private static final Color COLOR_SCORE      = Color.RED;
@@ -59,10 +61,19 @@ class HomeScreen implements KeyListener
     private static final Color COLOR_SELECTED   = Color.YELLOW;
     private int choice = 1;
 
+    // Zone d'affichage de l'avancement du chargement et barre de progression
+    private static final Rectangle PROGRESS_AREA =
+	new Rectangle(200, 396, 240, 34);
+    private static final Rectangle PROGRESS_BAR =
+	new Rectangle(220, 418, 200, 8);
+
+    // État du chargement : terminé, ou partie demandée avant la fin
+    private boolean loaded = false, starting = false;
+
     // Le meilleur score
     private int score = 0;
 
-    // Taille de la fentre
+    // Taille de la fenêtre
     private final int width, height;
 
     // Objets auxiliaires
@@ -71,58 +82,110 @@ class HomeScreen implements KeyListener
     private final Component   component;
     private final Image       homeImage;
     private final Game        game;
+    private final Startup     startup;
 
     /**
      * Constructeur de la classe HomeScreen
      */
     public HomeScreen(final Graphics gc, final ImageLoader loader,
-		      final Component component)
+		      final Component component, final GameClock clock,
+		      final Startup startup)
     {
 	// Initialise l'objet
 	this.gc        = gc;
 	this.loader    = loader;
 	this.component = component;
+	this.startup   = startup;
 	width  = component.getWidth();
 	height = component.getHeight();
 
-	// Charge l'image
+	// Charge l'image immédiatement : l'écran est affiché sans attendre
+	// les autres données
 	homeImage = loader.load("home");
 
-	// Cre l'objet Game
-	game = new Game(gc, loader, component, this);
+	// Crée l'objet Game, dont les images sont chargées en parallèle
+	game = new Game(gc, loader, component, this, clock);
     }
 
+    /**
+     * Lance le chargement des données ; le menu reste utilisable pendant
+     * celui-ci
+     */
     public void init()
     {
-	// Affiche un message indiquant que les donnes sont en train d'tre
-	// charges
-	gc.setColor(COLOR_BACKGROUND);
-	gc.fillRect(0, 0, width, height);
-	gc.setColor(COLOR_TEXT);
-	gc.setFont(new Font("SansSerif", Font.BOLD | Font.ITALIC, 24));
-	drawCenteredText("Chargement des donnes...", width / 2, height / 2);
+	// Chargement des niveaux, en même temps que celui des images
+	game.load(startup);
 
-	// Chargement des donnes et des images
-	loader.waitLoading();
+	// Suivi du chargement
+	startup.setProgressListener(new Runnable() {
+		public void run()
+		{
+		    progress();
+		}
+	    });
+	startup.whenDone(new Runnable() {
+		public void run()
+		{
+		    loaded();
+		}
+	    });
+    }
+
+    /**
+     * Méthode appelée quand une tâche de chargement est terminée
+     */
+    private synchronized void progress()
+    {
+	if (loaded)
+	    return;
+
+	paintProgress();
+	updateProgress();
+    }
+
+    /**
+     * Méthode appelée quand toutes les données sont chargées
+     */
+    private synchronized void loaded()
+    {
+	loaded = true;
+	loader.setStartup(null);
 	game.init();
+
+	// Lance la partie si elle a déjà été demandée, sinon efface la
+	// barre de progression
+	if (starting)
+	    startGame();
+	else {
+	    gc.drawImage(homeImage,
+			 PROGRESS_AREA.x, PROGRESS_AREA.y,
+			 PROGRESS_AREA.x + PROGRESS_AREA.width,
+			 PROGRESS_AREA.y + PROGRESS_AREA.height,
+			 PROGRESS_AREA.x, PROGRESS_AREA.y,
+			 PROGRESS_AREA.x + PROGRESS_AREA.width,
+			 PROGRESS_AREA.y + PROGRESS_AREA.height, component);
+	    updateProgress();
+	}
     }
 
     /**
-     * Mthode publique servant  lancer l'cran d'accueil
+     * Méthode publique servant à lancer l'écran d'accueil
      */
-    public void run()
+    public synchronized void run()
     {
-	// Met  jour le score
+	// Met à jour le score
 	final int newScore = game.getScore();
 	if (newScore > score)
 	    score = newScore;
 
-	// Affiche l'cran
+	// Affiche l'écran
 	paintScreen();
 	paintChoices();
+	if (!loaded)
+	    paintProgress();
 	update();
 
-	// Ajoute la gestion des vnements clavier
+	// Ajoute la gestion des événements clavier
 	component.addKeyListener(this);
     }
 
@@ -160,7 +223,67 @@ class HomeScreen implements KeyListener
     }
 
     /**
-     * Demande le redessin de la fentre
+     * Affiche l'avancement du chargement
+     */
+    private void paintProgress()
+    {
+	final int done  = startup.getDone();
+	final int total = startup.getTotal();
+
+	// Efface la zone en redessinant l'image de fond
+	gc.drawImage(homeImage,
+		     PROGRESS_AREA.x, PROGRESS_AREA.y,
+		     PROGRESS_AREA.x + PROGRESS_AREA.width,
+		     PROGRESS_AREA.y + PROGRESS_AREA.height,
+		     PROGRESS_AREA.x, PROGRESS_AREA.y,
+		     PROGRESS_AREA.x + PROGRESS_AREA.width,
+		     PROGRESS_AREA.y + PROGRESS_AREA.height, component);
+
+	// Dessine la barre de progression
+	gc.setColor(COLOR_BACKGROUND);
+	gc.fillRect(PROGRESS_BAR.x, PROGRESS_BAR.y,
+		    PROGRESS_BAR.width, PROGRESS_BAR.height);
+	gc.setColor(COLOR_SCORE);
+	if (total > 0)
+	    gc.fillRect(PROGRESS_BAR.x, PROGRESS_BAR.y,
+			PROGRESS_BAR.width * done / total,
+			PROGRESS_BAR.height);
+	gc.setColor(COLOR_TEXT);
+	gc.drawRect(PROGRESS_BAR.x, PROGRESS_BAR.y,
+		    PROGRESS_BAR.width - 1, PROGRESS_BAR.height - 1);
+
+	// Indique que la partie démarrera à la fin du chargement
+	if (starting) {
+	    gc.setFont(new Font("SansSerif", Font.BOLD | Font.ITALIC, 14));
+	    drawCenteredText("Chargement des données...", width / 2,
+			     PROGRESS_BAR.y - 6);
+	}
+    }
+
+    /**
+     * Demande le redessin de la zone de progression
+     */
+    private void updateProgress()
+    {
+	component.repaint(PROGRESS_AREA.x, PROGRESS_AREA.y,
+			  PROGRESS_AREA.width, PROGRESS_AREA.height);
+    }
+
+    /**
+     * Lance la partie
+     */
+    private void startGame()
+    {
+	// Retire la gestion des événements clavier
+	component.removeKeyListener(this);
+
+	// Lancement du jeu
+	game.setDifficulty(choice);
+	game.run();
+    }
+
+    /**
+     * Demande le redessin de la fenêtre
      */
     private void update()
     {
@@ -168,7 +291,7 @@ class HomeScreen implements KeyListener
     }
 
     /**
-     * Affiche du texte centr par rapport  un point
+     * Affiche du texte centré par rapport à un point
      */
     public void drawCenteredText(final String text, final int x, final int y)
     {
@@ -183,7 +306,7 @@ class HomeScreen implements KeyListener
     }
 
     /**
-     * Affiche un nombre centr par rapport  un point
+     * Affiche un nombre centré par rapport à un point
      */
     public void drawCenteredText(final int number, final int x, final int y)
     {
@@ -191,15 +314,15 @@ class HomeScreen implements KeyListener
     }
 
     /**
-     * Mthode appele quand une touche est enfonce
+     * Méthode appelée quand une touche est enfoncée
      */
-    public void keyPressed(final KeyEvent event)
+    public synchronized void keyPressed(final KeyEvent event)
     {
 	switch (event.getKeyCode()) {
 	case KeyEvent.VK_LEFT:
 	case KeyEvent.VK_KP_LEFT:
 	case KeyEvent.VK_NUMPAD4:
-	    // Choix prcdent
+	    // Choix précédent
 	    choice = (choice + CHOICES.length - 1) % CHOICES.length;
 	    paintChoices();
 	    update();
@@ -216,26 +339,31 @@ class HomeScreen implements KeyListener
 
 	case KeyEvent.VK_SPACE:
 	case KeyEvent.VK_ENTER:
-	    // Retire la gestion des vnements clavier
-	    component.removeKeyListener(this);
+	    // Si les données ne sont pas encore chargées, la partie sera
+	    // lancée à la fin du chargement
+	    if (!loaded) {
+		component.removeKeyListener(this);
+		starting = true;
+		paintProgress();
+		updateProgress();
+		break;
+	    }
 
-	    // Lancement du jeu
-	    game.setDifficulty(choice);
-	    game.run();
+	    startGame();
 	}
     }
 
     /**
-     * Mthode appele quand une touche est relche
+     * Méthode appelée quand une touche est relâchée
      */
-    public void keyReleased(final KeyEvent event) { /* Non utilise */ }
+    public void keyReleased(final KeyEvent event) { /* Non utilisée */ }
 
     /**
-     * Mthode appele quand une touche gnre un vnement "entre d'un
-     * caractre", ce qui peut arriver plusieurs fois lors d'un seul
-     * enfoncement de touche  intervalle rgulier (rptition)
+     * Méthode appelée quand une touche génère un événement "entrée d'un
+     * caractère", ce qui peut arriver plusieurs fois lors d'un seul
+     * enfoncement de touche à intervalle régulier (répétition)
      */
-    public void keyTyped(final KeyEvent event) { /* Non utilise */ }
+    public void keyTyped(final KeyEvent event) { /* Non utilisée */ }
 }
 
 // Fin du fichier
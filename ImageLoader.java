@@ -1,35 +1,38 @@
 /*
  * ---------------------------------------------------------------------------
  *
- * Facman -- Un clne de Pacman en Java
+ * Facman -- Un clône de Pacman en Java
  * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
  *
  * ---------------------------------------------------------------------------
  *
  * Fichier     : ImageLoader.java
  *
- * Description : Classe ImageLoader permettant de rcuprer des images et
- *               d'attendre la fin de leur chargement.
+ * Description : Classe ImageLoader permettant de charger des images et des
+ *               grilles d'images (sprites).
  *
- * Commentaire : Cette classe ne peut pas tre utilise telle quelle : il faut
- *               utiliser une classe en drivant et implmentant les mthodes
- *               permettant de rcuperer et de crer des images.
+ * Commentaire : Cette classe ne peut pas être utilisée telle quelle : il faut
+ *               utiliser une classe en dérivant et implémentant la méthode
+ *               permettant de localiser les images. Chaque fichier est
+ *               décodé une seule fois par ImageIO, de manière synchrone, dans
+ *               une image compatible avec l'écran (donc accélérable) ; les
+ *               sprites d'une grille sont des vues sur cette image.
  *
  * ---------------------------------------------------------------------------
  *
  * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
- * modifier conformment aux dispositions de la Licence Publique Gnrale GNU,
- * telle que publie par la Free Software Foundation ; version 2 de la
- * licence, ou encore ( votre convenance) toute version ultrieure.
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
  *
- * Ce programme est distribu dans l'espoir qu'il sera utile, mais SANS AUCUNE
- * GARANTIE ; sans mme la garantie implicite de COMMERCIALISATION ou
- * D'ADAPTATION  UN OBJET PARTICULIER. Pour plus de dtail, voir la Licence
- * Publique Gnrale GNU.
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
  *
- * Vous devez avoir reu un exemplaire de la Licence Publique Gnrale GNU en
- * mme temps que ce programme ; si ce n'est pas le cas, crivez  la Free
- * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, tats-Unis.
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
  *
  * ---------------------------------------------------------------------------
  */
@@ -38,63 +41,68 @@
 // Imports
 import java.awt.Graphics;
 import java.awt.Image;
-import java.awt.MediaTracker;
 import java.awt.Component;
-import java.awt.image.ImageProducer;
-import java.awt.image.FilteredImageSource;
-import java.awt.image.CropImageFilter;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import javax.imageio.ImageIO;
 
 /**
- * Classe ImageLoader permettant de charger des images et de s'assurer
- * qu'elles le sont compltement, pour viter l'effet de clignottement du au
- * chargement diffr des images
+ * Classe ImageLoader permettant de charger des images entièrement avant leur
+ * utilisation, pour éviter l'effet de clignottement du au chargement différé
+ * des images
  */
 abstract class ImageLoader
 {
-    // Rpertoire contenant les images, et leur extension
+    // Répertoire contenant les images, et leur extension
     protected static final String PATH = "images/";
     protected static final String EXT  = ".png";
 
-    // Taille par dfaut des sprites
+    // Taille par défaut des sprites
     private static final int DEF_SPRT_WIDTH = 32, DEF_SPRT_HEIGHT = 32;
 
-    // Tracker d'images
-    private final MediaTracker tracker;
+    // Composant dont la configuration graphique détermine le format des
+    // images
+    private final Component component;
 
-    // Mthodes abstraites que les classes drives devront implmenter
+    // Chargement parallèle en cours, ou null pour un chargement immédiat
+    private Startup startup = null;
 
-    // Charge une image depuis un fichier
-    abstract protected Image getImage(final String filename);
+    // Méthode abstraite que les classes dérivées devront implémenter
 
-    // Cre une nouvelle image
-    abstract protected Image createImage(final ImageProducer producer);
+    // Obtient l'adresse d'un fichier image
+    abstract protected URL getURL(final String filename);
 
     /**
      * Constructeur de la classe ImageLoader
      */
     public ImageLoader(Component component)
     {
-	// Cration du tracker
-	tracker = new MediaTracker(component);
+	this.component = component;
     }
 
     /**
-     * Charge une image simple
+     * Définit le chargement parallèle dans lequel les grilles d'images sont
+     * décodées ; les tableaux retournés ne sont alors remplis qu'à la fin de
+     * celui-ci
      */
-    public Image load(final String filename)
+    public void setStartup(final Startup startup)
     {
-	// Image  charger
-	final Image image = getImage(filename);
-
-	// Ajout de l'image au tracker
-	tracker.addImage(image, 0);
+	this.startup = startup;
+    }
 
-	// Retourne l'image en cours de chargement
-	return image;
+    /**
+     * Charge une image simple, toujours immédiatement
+     */
+    public Image load(final String filename)
+    {
+	return decode(filename);
     }
 
     /**
-     * Cre un tableau d'images (2 dimensions)  partir d'une image contenant
+     * Crée un tableau d'images (2 dimensions) à partir d'une image contenant
      * en fait une grille d'images
      */
     public Image[][] load(final String filename, final int cols,
@@ -104,25 +112,26 @@ abstract class ImageLoader
     }
 
     /**
-     * Cre un tableau d'images (2 dimensions)  partir d'une image contenant
-     * en fait une grille d'images avec une taille de sprite personnalise
+     * Crée un tableau d'images (2 dimensions) à partir d'une image contenant
+     * en fait une grille d'images, en spécifiant la taille des sprites
      */
     public Image[][] load(final String filename,
 			  final int cols, final int rows,
 			  final int spriteWidth, final int spriteHeight)
     {
-	// Cration du tableau d'images
+	// Création du tableau d'images
 	final Image[][] images = new Image[rows][cols];
 
 	// Charge la grille d'images
 	load(filename, images, spriteWidth, spriteHeight);
 
-	// Retourne le tableau d'images en cours de chargement
+	// Retourne le tableau d'images
 	return images;
     }
 
     /**
-     * Charge dans un tableau d'images (2 dimensions) une grille d'images
+     * Remplit un tableau d'images (2 dimensions) à partir d'une image
+     * contenant en fait une grille d'images
      */
     public void load(final String filename, final Image[][] images)
     {
@@ -130,54 +139,83 @@ abstract class ImageLoader
     }
 
     /**
-     * Charge dans un tableau d'images (2 dimensions) une grille d'images avec
-     * une taile de sprite personnalise
+     * Remplit un tableau d'images (2 dimensions) à partir d'une image
+     * contenant en fait une grille d'images, en spécifiant la taille des
+     * sprites
      */
     public void load(final String filename, final Image[][] images,
 		     final int spriteWidth, final int spriteHeight)
     {
-	// Image contenant une grille d'images plus petites
-	final Image array = getImage(filename);
-
-	// Si le paramtre est valide
-	if (images != null && images.length != 0) {
-	    // Objets servant  la dcoupe de l'image
-	    CropImageFilter     filter;
-	    FilteredImageSource source;
-
-	    // Cration des images contenues dans la grille d'images
-	    for (int y = 0; y < images.length; y++)
-		for (int x = 0; x < images[y].length; x++) {
-		    // Dcoupe l'image
-		    filter = new CropImageFilter(x * spriteWidth,
-						 y * spriteHeight,
-						 spriteWidth, spriteHeight);
-		    source = new FilteredImageSource(array.getSource(),
-						     filter);
+	// Si le paramètre est valide
+	if (images == null || images.length == 0)
+	    return;
+
+	// Le décodage est confié au chargement parallèle, s'il y en a un
+	if (startup != null) {
+	    startup.submit(new Runnable() {
+		    public void run()
+		    {
+			split(filename, images, spriteWidth, spriteHeight);
+		    }
+		});
+	    return;
+	}
 
-		    // Stocke le rsultat dans le tableau
-		    images[y][x] = createImage(source);
+	split(filename, images, spriteWidth, spriteHeight);
+    }
 
-		    // Ajout de l'image au tracker
-		    tracker.addImage(images[y][x], 0);
-		}
-	}
+    /**
+     * Décode une grille d'images et la découpe dans un tableau
+     */
+    private void split(final String filename, final Image[][] images,
+		       final int spriteWidth, final int spriteHeight)
+    {
+	// Image contenant une grille d'images plus petites, décodée une fois
+	final BufferedImage array = decode(filename);
+
+	// Les sprites partagent les données de la grille
+	for (int y = 0; y < images.length; y++)
+	    for (int x = 0; x < images[y].length; x++)
+		images[y][x] = array.getSubimage(x * spriteWidth,
+						 y * spriteHeight,
+						 spriteWidth, spriteHeight);
     }
 
     /**
-     * Attend que toutes les images soient charges
+     * Décode un fichier image et le convertit dans le format de l'écran
      */
-    public void waitLoading()
+    private BufferedImage decode(final String filename)
     {
-	// Gestion des exceptions
-	try {
-	    // Attend le chargement des images
-	    tracker.waitForAll();
+	final BufferedImage image;
 
-	    // Gestion des erreurs
-	    if (tracker.isErrorAny())
-		throw new IllegalArgumentException("Sprites non chargs");
-	} catch (Exception e) { /* Ne ragit pas aux erreurs ventuelles */ }
+	// Décodage
+	try {
+	    final URL url = getURL(filename);
+	    image = url != null ? ImageIO.read(url) : null;
+	} catch (IOException e) {
+	    throw new IllegalArgumentException("Image non chargée : " +
+					       filename);
+	}
+	if (image == null)
+	    throw new IllegalArgumentException("Image non chargée : " +
+					       filename);
+
+	// Configuration graphique de l'écran, s'il y en a un
+	GraphicsConfiguration config = component.getGraphicsConfiguration();
+	if (config == null && !GraphicsEnvironment.isHeadless())
+	    config = GraphicsEnvironment.getLocalGraphicsEnvironment().
+		getDefaultScreenDevice().getDefaultConfiguration();
+	if (config == null)
+	    return image;
+
+	// Copie dans une image compatible avec l'écran
+	final BufferedImage compatible =
+	    config.createCompatibleImage(image.getWidth(), image.getHeight(),
+					 image.getTransparency());
+	final Graphics gc = compatible.getGraphics();
+	gc.drawImage(image, 0, 0, null);
+	gc.dispose();
+	return compatible;
     }
 }
 
@@ -0,0 +1,133 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : KeyboardController.java
+ *
+ * Description : La classe KeyboardController pilote Pacman à partir des
+ *               touches de direction du clavier.
+ *
+ * Commentaire : Les événements clavier, reçus dans le thread AWT, ne font que
+ *               mettre à jour un masque lu au tour suivant.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+// Imports
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+
+/**
+ * La classe KeyboardController, contrôleur suivant les touches de
+ * direction enfoncées
+ */
+class KeyboardController implements Controller, KeyListener
+{
+    // Touches de direction enfoncées (le bit n correspond à la direction n)
+    private volatile int keys = 0;
+
+    /**
+     * Oublie les touches enfoncées, au début d'une partie
+     */
+    public void reset()
+    {
+	keys = 0;
+    }
+
+    /**
+     * Obtient les touches enfoncées
+     */
+    public int getKeys(final Simulation simulation)
+    {
+	return keys;
+    }
+
+    /**
+     * Choisit une direction parmi les 4 disponible (gauche, droite, haut, bas)
+     * en fonctions du code de la touche passé en paramètre
+     */
+    private static int selectKey(final int keyCode)
+    {
+	// Gauche : touches flèche gauche et 4/gauche du pavé numérique
+	switch (keyCode) {
+	case KeyEvent.VK_LEFT:
+	case KeyEvent.VK_KP_LEFT:
+	case KeyEvent.VK_NUMPAD4:
+	    return Character.LEFT;
+
+	// Droite : touches flèche droite et 6/droite du pavé numérique
+	case KeyEvent.VK_RIGHT:
+	case KeyEvent.VK_KP_RIGHT:
+	case KeyEvent.VK_NUMPAD6:
+	    return Character.RIGHT;
+
+	// Gauche : touches flèche haut et 8/haut du pavé numérique
+	case KeyEvent.VK_UP:
+	case KeyEvent.VK_KP_UP:
+	case KeyEvent.VK_NUMPAD8:
+	    return Character.UP;
+
+	// Gauche : touches flèche bas et 2/bas du pavé numérique
+	case KeyEvent.VK_DOWN:
+	case KeyEvent.VK_KP_DOWN:
+	case KeyEvent.VK_NUMPAD2:
+	    return Character.DOWN;
+	}
+
+	// La touche appuyée ne correspond pas à une direction
+	return -1;
+    }
+
+    /**
+     * Méthode appelée quand une touche est enfoncée : si c'est une touche
+     * de direction, elle sera transmise à Pacman au prochain tour (ce qui
+     * démarre le jeu s'il est en attente)
+     */
+    public synchronized void keyPressed(final KeyEvent event)
+    {
+	final int key = selectKey(event.getKeyCode());
+	if (key != -1)
+	    keys |= 1 << key;
+    }
+
+    /**
+     * Méthode appelée quand une touche est relâchée : si c'est une
+     * direction, indique qu'elle n'est plus voulue
+     */
+    public synchronized void keyReleased(final KeyEvent event)
+    {
+	final int key = selectKey(event.getKeyCode());
+	if (key != -1)
+	    keys &= ~(1 << key);
+    }
+
+    /**
+     * Méthode appelée quand une touche génère un événement "entrée d'un
+     * caractère" (non utilisée)
+     */
+    public void keyTyped(final KeyEvent event) { /* Non utilisée */ }
+}
+
+// Fin du fichier
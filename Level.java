@@ -0,0 +1,238 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : Level.java
+ *
+ * Description : La classe Level contient un niveau décodé et les tables
+ *               calculées à partir de lui (sorties, téléporteurs).
+ *
+ * Commentaire : Un objet Level n'est plus modifié après sa construction : il
+ *               peut être préparé dans un autre thread puis partagé avec la
+ *               grille de jeu.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+
+/**
+ * La classe Level, niveau prêt à être joué
+ */
+class Level
+{
+    // Dimensions de la grille, et de la table des sorties (entourée d'une
+    // bordure de murs, voir Board) ; steps contient le décalage d'indice
+    // de chaque direction
+    final int   width, height, stride;
+    final int[] steps;
+
+    // Grille (constantes Board.BOX_*), partagée avec Board puisque les
+    // pastilles n'y figurent pas : elle n'est jamais modifiée
+    final ChunkedGrid board;
+
+    // Pastilles initiales, un bit par case (indice y * width + x) : gums
+    // contient toutes les pastilles, que Board recopie au début de chaque
+    // partie du niveau, et superGums celles qui sont des super pastilles
+    final long[] gums, superGums;
+
+    // Positions et directions initiales
+    final Position pacmanPos = new Position();
+    final Position ghostPos  = new Position();
+    final int      pacmanDir;
+
+    // Téléporteurs (voir Board.getTeleporter())
+    final Position[] teleporters = new Position[20];
+
+    // Tables des sorties et des destinations des téléporteurs (voir Board),
+    // creuses : seuls les morceaux de lignes ayant des sorties, ou des
+    // téléporteurs, occupent de la mémoire
+    final ChunkedTable exits, destinations;
+
+    /**
+     * Constructeur : décode un niveau lu dans un fichier ou un paquet et
+     * calcule ses tables
+     */
+    Level(final byte[][] array)
+    {
+	int  dir = 0;
+	char chr;
+
+	// Dimensions et tables
+	width  = array[0].length;
+	height = array.length;
+	stride = width + 2;
+	steps  = new int[] {-1, 1, -stride, stride};
+	board  = new ChunkedGrid(width, height);
+	gums      = new long[(width * height + 63) >>> 6];
+	superGums = new long[gums.length];
+
+	final int cells = stride * (height + 2);
+	exits        = new ChunkedTable(cells, 0);
+	destinations = new ChunkedTable(cells, -1);
+
+	// Initialise chaque case de la grille
+	for (int y = 0; y < height; y++)
+	    for (int x = 0; x < width; x++)
+		switch ((chr = (char) array[y][x])) {
+		case '#':
+		    board.set(x, y, Board.BOX_WALL);
+		    break;
+
+		case ' ':
+		    board.set(x, y, Board.BOX_EMPTY);
+		    break;
+
+		case '.':
+		    board.set(x, y, Board.BOX_EMPTY);
+		    setBit(gums, y * width + x);
+		    break;
+
+		case 'o':
+		    board.set(x, y, Board.BOX_EMPTY);
+		    setBit(gums, y * width + x);
+		    setBit(superGums, y * width + x);
+		    break;
+
+		case '<':
+		    board.set(x, y, Board.BOX_EMPTY);
+		    dir = 0;
+		    pacmanPos.setPosition(x, y);
+		    break;
+
+		case '>':
+		    board.set(x, y, Board.BOX_EMPTY);
+		    dir = 1;
+		    pacmanPos.setPosition(x, y);
+		    break;
+
+		case '^':
+		    board.set(x, y, Board.BOX_EMPTY);
+		    dir = 2;
+		    pacmanPos.setPosition(x, y);
+		    break;
+
+		case 'v':
+		    board.set(x, y, Board.BOX_EMPTY);
+		    dir = 3;
+		    pacmanPos.setPosition(x, y);
+		    break;
+
+		case 'G':
+		    board.set(x, y, Board.BOX_GHOSTS);
+		    ghostPos.setPosition(x, y);
+		    break;
+
+		case '\n':
+		    while (x < width)
+			board.set(x++, y, Board.BOX_WALL);
+		    x = -1;
+		    y++;
+		    break;
+
+		default:
+		    if (chr >= '0' && chr <= '9') {
+			// Ajout du téléporteur à la liste
+			int value = chr - '0';
+			board.set(x, y,
+				  (byte) (Board.BOX_TELEPORTERS + value));
+
+			if (teleporters[value] == null)
+			    // Première occurence du téléporteur
+			    teleporters[value] = new Position(x, y);
+			else {
+			    // Deuxième occurence : échange des coordonnées
+			    teleporters[value + 10] = new Position(x, y);
+			    board.set(teleporters[value].x,
+				      teleporters[value].y,
+				      (byte) (Board.BOX_TELEPORTERS + value +
+					      10));
+			}
+		    } else
+			// Tout autre caractère est une case vide (la grille
+			// ne contient initialement que des murs)
+			board.set(x, y, Board.BOX_EMPTY);
+		}
+	pacmanDir = dir;
+
+	// Calcule les sorties et les destinations des téléporteurs
+	initExits();
+    }
+
+    /**
+     * Met à 1 un bit d'un ensemble de pastilles
+     */
+    private static void setBit(final long[] bits, final int index)
+    {
+	bits[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Obtient l'indice d'une case dans les tables
+     */
+    private int cell(final int x, final int y)
+    {
+	return (y + 1) * stride + x + 1;
+    }
+
+    /**
+     * Méthode permettant de savoir si une case est un mur
+     */
+    private boolean isBoxWall(final int x, final int y)
+    {
+	if (x < 0 || x >= width || y < 0 || y >= height)
+	    return true;
+	return board.get(x, y) >= Board.BOX_WALL;
+    }
+
+    /**
+     * Remplit la table des sorties et celle des destinations des
+     * téléporteurs à partir de la grille
+     */
+    private void initExits()
+    {
+	for (int y = 0; y < height; y++)
+	    for (int x = 0; x < width; x++) {
+		final int cell = cell(x, y);
+		int mask = 0;
+
+		// Cases voisines qui ne sont pas des murs
+		for (int exit = 0; exit < Board.EXIT_X.length; exit++)
+		    if (!isBoxWall(x + Board.EXIT_X[exit],
+				   y + Board.EXIT_Y[exit]))
+			mask |= 1 << exit;
+		exits.set(cell, mask);
+
+		// Destination du téléporteur
+		final byte box = board.get(x, y);
+		if (box >= Board.BOX_TELEPORTERS && box < Board.BOX_WALL) {
+		    final Position dest =
+			teleporters[box - Board.BOX_TELEPORTERS];
+		    destinations.set(cell, cell(dest.x, dest.y));
+		}
+	    }
+    }
+}
+
+// Fin du fichier
@@ -0,0 +1,212 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : LevelCache.java
+ *
+ * Description : La classe LevelCache prépare les niveaux à la demande et garde
+ *               les derniers utilisés, le suivant étant préparé à l'avance.
+ *
+ * Commentaire : Les niveaux sont préparés par un seul thread partagé, de
+ *               faible priorité, pendant que le niveau courant est joué.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * La classe LevelCache, cache borné de niveaux préparés
+ */
+class LevelCache
+{
+    // Nombre de niveaux gardés en plus de ceux en cours d'utilisation : le
+    // suivant et le précédent, ou le courant quand aucune grille ne le
+    // retient
+    private static final int CAPACITY = 3;
+
+    // Thread de préparation, partagé par toutes les grilles
+    private static final ExecutorService PREFETCH =
+	Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(final Runnable task)
+		{
+		    final Thread thread = new Thread(task, "Préchargement");
+		    thread.setDaemon(true);
+		    thread.setPriority(Thread.MIN_PRIORITY);
+		    return thread;
+		}
+	    });
+
+    // Grille fournissant les niveaux bruts
+    private final Board board;
+
+    // Niveaux en cours de préparation ou prêts (objets Future), du moins
+    // récemment utilisé au plus récent
+    private final Map levels = new LinkedHashMap(CAPACITY + 1, .75f, true);
+
+    // Nombre de grilles utilisant chaque niveau (objets Integer) : ces
+    // niveaux ne sont jamais retirés, un cache partagé par plusieurs
+    // grilles ne garde donc que les niveaux en jeu et CAPACITY autres
+    private final Map users = new HashMap();
+
+    /**
+     * Constructeur de la classe LevelCache
+     */
+    public LevelCache(final Board board)
+    {
+	this.board = board;
+    }
+
+    /**
+     * Obtient un niveau, en attendant la fin de sa préparation si besoin
+     */
+    public Level get(final int number)
+    {
+	final Future future = request(number);
+
+	try {
+	    return (Level) future.get();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new IllegalStateException("Chargement du niveau " +
+					    (number + 1) + " interrompu");
+	} catch (ExecutionException e) {
+	    throw new IllegalStateException("Niveau " + (number + 1) +
+					    " non chargé : " + e.getCause());
+	}
+    }
+
+    /**
+     * Lance la préparation d'un niveau s'il n'est pas déjà dans le cache
+     */
+    public void prefetch(final int number)
+    {
+	request(number);
+    }
+
+    /**
+     * Permet de savoir si un niveau est prêt, c'est-à-dire si get() le
+     * retourne sans attendre ; sa préparation est lancée si besoin
+     */
+    public boolean isReady(final int number)
+    {
+	return request(number).isDone();
+    }
+
+    /**
+     * Obtient un niveau comme get(), et le retient dans le cache jusqu'à
+     * l'appel correspondant de release()
+     */
+    public Level acquire(final int number)
+    {
+	synchronized (this) {
+	    final Integer key = Integer.valueOf(number);
+	    final Integer count = (Integer) users.get(key);
+	    users.put(key, Integer.valueOf(count != null ?
+					   count.intValue() + 1 : 1));
+	}
+
+	try {
+	    return get(number);
+	} catch (IllegalStateException e) {
+	    release(number);
+	    throw e;
+	}
+    }
+
+    /**
+     * Cesse de retenir un niveau obtenu par acquire() : il pourra être
+     * retiré du cache, puis préparé de nouveau à la demande
+     */
+    public synchronized void release(final int number)
+    {
+	final Integer key = Integer.valueOf(number);
+	final Integer count = (Integer) users.get(key);
+
+	if (count == null)
+	    return;
+	if (count.intValue() > 1)
+	    users.put(key, Integer.valueOf(count.intValue() - 1));
+	else
+	    users.remove(key);
+    }
+
+    /**
+     * Vide le cache (les niveaux ont changé)
+     */
+    public synchronized void clear()
+    {
+	levels.clear();
+    }
+
+    /**
+     * Obtient l'objet Future d'un niveau, en lançant sa préparation si elle
+     * n'a pas déjà été demandée
+     */
+    private synchronized Future request(final int number)
+    {
+	final Integer key = Integer.valueOf(number);
+	Future future = (Future) levels.get(key);
+
+	if (future == null) {
+	    future = PREFETCH.submit(new Callable() {
+		    public Object call()
+		    {
+			final byte[][] array = board.readLevel(number);
+			if (array == null)
+			    throw new IllegalStateException("illisible");
+			return new Level(array);
+		    }
+		});
+	    levels.put(key, future);
+
+	    // Retire les niveaux inutilisés les moins récemment demandés
+	    int spare = -CAPACITY;
+	    Iterator it = levels.keySet().iterator();
+	    while (it.hasNext())
+		if (!users.containsKey(it.next()))
+		    spare++;
+	    it = levels.keySet().iterator();
+	    while (spare > 0)
+		if (!users.containsKey(it.next())) {
+		    it.remove();
+		    spare--;
+		}
+	}
+
+	return future;
+    }
+}
+
+// Fin du fichier
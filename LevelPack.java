@@ -0,0 +1,267 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : LevelPack.java
+ *
+ * Description : La classe LevelPack lit et écrit les paquets de niveaux
+ *               compilés, et contient le compilateur qui les produit à partir
+ *               des fichiers texte.
+ *
+ * Commentaire : Un paquet est projeté en mémoire quand c'est un fichier, sinon
+ *               lu en entier ; les niveaux ne sont décodés qu'à la demande.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import java.util.Vector;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * La classe LevelPack, paquet de niveaux compilés.
+ *
+ * Format (entiers de 4 octets, poids fort en premier) :
+ * - en-tête : signature, version, nombre de niveaux ;
+ * - index : pour chaque niveau, sa position depuis le début du fichier,
+ *   sa largeur et sa hauteur ;
+ * - niveaux : largeur x hauteur octets chacun, ligne par ligne, avec les
+ *   mêmes caractères que les fichiers texte.
+ */
+class LevelPack
+{
+    // Signature ("FPAK") et version du format
+    private static final int MAGIC = 0x4650414b, VERSION = 2;
+
+    // Taille de l'en-tête et d'une entrée de l'index
+    private static final int HEADER_SIZE = 3 * 4, ENTRY_SIZE = 3 * 4;
+
+    // Contenu du paquet et nombre de niveaux
+    private final ByteBuffer buffer;
+    private final int        count;
+
+    /**
+     * Constructeur de la classe LevelPack ; vérifie l'en-tête et l'index
+     */
+    private LevelPack(final ByteBuffer buffer)
+    {
+	this.buffer = buffer;
+
+	// En-tête
+	if (buffer.capacity() < HEADER_SIZE ||
+	    buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+	    throw new IllegalArgumentException("Paquet de niveaux invalide");
+	count = buffer.getInt(8);
+
+	// Index : chaque niveau doit avoir une taille acceptée par Board et
+	// être entièrement dans le paquet
+	if (count < 0 ||
+	    HEADER_SIZE + (long) ENTRY_SIZE * count > buffer.capacity())
+	    throw new IllegalArgumentException("Paquet de niveaux tronqué");
+	for (int i = 0; i < count; i++) {
+	    final int entry  = HEADER_SIZE + ENTRY_SIZE * i;
+	    final int offset = buffer.getInt(entry);
+	    final int width  = buffer.getInt(entry + 4);
+	    final int height = buffer.getInt(entry + 8);
+
+	    if (width < 1 || height < 1 || width > Board.MAX_SIZE ||
+		height > Board.MAX_SIZE)
+		throw new IllegalArgumentException(
+		    "Taille de niveau incorrecte dans le paquet");
+	    if (offset < HEADER_SIZE ||
+		(long) offset + width * height > buffer.capacity())
+		throw new IllegalArgumentException(
+		    "Paquet de niveaux tronqué");
+	}
+    }
+
+    /**
+     * Ouvre un paquet de niveaux
+     */
+    public static LevelPack open(final URL url) throws IOException
+    {
+	return new LevelPack(read(url));
+    }
+
+    /**
+     * Obtient le contenu d'un paquet : projeté en mémoire si c'est un
+     * fichier, lu en entier sinon (dans une archive JAR par exemple)
+     */
+    private static ByteBuffer read(final URL url) throws IOException
+    {
+	if ("file".equals(url.getProtocol())) {
+	    final RandomAccessFile file;
+	    try {
+		file = new RandomAccessFile(new File(url.toURI()), "r");
+	    } catch (URISyntaxException e) {
+		throw new IOException(e.getMessage());
+	    }
+
+	    // La projection reste valide après la fermeture du fichier
+	    try {
+		final FileChannel channel = file.getChannel();
+		return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				   channel.size());
+	    } finally {
+		file.close();
+	    }
+	}
+
+	final InputStream           stream = url.openStream();
+	final ByteArrayOutputStream bytes  = new ByteArrayOutputStream();
+	final byte[]                chunk  = new byte[8192];
+	int length;
+
+	try {
+	    while ((length = stream.read(chunk)) != -1)
+		bytes.write(chunk, 0, length);
+	} finally {
+	    stream.close();
+	}
+	return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /**
+     * Obtient le nombre de niveaux du paquet
+     */
+    public int getCount()
+    {
+	return count;
+    }
+
+    /**
+     * Décode un niveau ; peut être appelée depuis plusieurs threads
+     */
+    public byte[][] getLevel(final int number)
+    {
+	final int        entry = HEADER_SIZE + ENTRY_SIZE * number;
+	final byte[][]   level = new byte[buffer.getInt(entry + 8)]
+	    [buffer.getInt(entry + 4)];
+	final ByteBuffer view  = buffer.duplicate();
+
+	view.position(buffer.getInt(entry));
+	for (int y = 0; y < level.length; y++)
+	    view.get(level[y]);
+	return level;
+    }
+
+    /**
+     * Écrit un paquet contenant les niveaux indiqués (tableaux d'octets
+     * à deux dimensions)
+     */
+    public static void write(final Vector levels, final OutputStream stream)
+	throws IOException
+    {
+	final DataOutputStream out = new DataOutputStream(stream);
+	final int              count = levels.size();
+
+	// Taille du paquet : il est projeté en mémoire d'un seul tenant (voir
+	// read()) et les positions de l'index tiennent sur 4 octets
+	long size = HEADER_SIZE + (long) ENTRY_SIZE * count;
+	for (int i = 0; i < count; i++) {
+	    final byte[][] level = (byte[][]) levels.elementAt(i);
+	    size += (long) level[0].length * level.length;
+	}
+	if (size > Integer.MAX_VALUE)
+	    throw new IOException("Paquet de niveaux trop gros : " + size +
+				  " octets");
+	long offset = HEADER_SIZE + (long) ENTRY_SIZE * count;
+
+	// En-tête
+	out.writeInt(MAGIC);
+	out.writeInt(VERSION);
+	out.writeInt(count);
+
+	// Index
+	for (int i = 0; i < count; i++) {
+	    final byte[][] level = (byte[][]) levels.elementAt(i);
+	    out.writeInt((int) offset);
+	    out.writeInt(level[0].length);
+	    out.writeInt(level.length);
+	    offset += (long) level[0].length * level.length;
+	}
+
+	// Niveaux
+	for (int i = 0; i < count; i++) {
+	    final byte[][] level = (byte[][]) levels.elementAt(i);
+	    for (int y = 0; y < level.length; y++)
+		out.write(level[y]);
+	}
+	out.flush();
+    }
+
+    /**
+     * Compilateur : lit les fichiers texte levelNNN.txt d'un répertoire,
+     * dans l'ordre et jusqu'au premier manquant (sans limite de nombre,
+     * contrairement au chargement des fichiers texte), et écrit le paquet
+     */
+    public static void main(final String argv[]) throws IOException
+    {
+	if (argv.length != 2) {
+	    System.err.println("Utilisation : java LevelPack <répertoire> " +
+			       "<paquet>");
+	    System.exit(1);
+	}
+
+	// Lecture des niveaux
+	final Vector levels = new Vector();
+	for (int i = 1; ; i++) {
+	    final File file = new File(argv[0], Board.levelName(i));
+	    if (!file.isFile())
+		break;
+
+	    final byte[][] level =
+		Board.readLevel(new FileInputStream(file));
+	    if (level == null)
+		throw new IOException("Niveau illisible : " + file);
+	    levels.add(level);
+	}
+
+	// Écriture du paquet
+	final OutputStream out =
+	    new BufferedOutputStream(new FileOutputStream(argv[1]));
+	try {
+	    write(levels, out);
+	} finally {
+	    out.close();
+	}
+	System.out.println(levels.size() + " niveau(x) compilé(s) dans " +
+			   argv[1]);
+    }
+}
+
+// Fin du fichier
@@ -1,39 +1,39 @@
 /*
  * ---------------------------------------------------------------------------
  *
- * Facman -- Un clne de Pacman en Java
+ * Facman -- Un clône de Pacman en Java
  * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
  *
  * ---------------------------------------------------------------------------
  *
  * Fichier     : Pacman.java
  *
- * Description : La classe Pacman est drive de la classe Character. Elle
- *               gre tout ce qui est en rapport avec le contrle, le
- *               dplacement et l'affichage du personnage contrlable par le
+ * Description : La classe Pacman est dérivée de la classe Character. Elle
+ *               gère tout ce qui est en rapport avec le contrôle, le
+ *               déplacement et l'affichage du personnage contrôlable par le
  *               joueur, en l'occurence un Pacman.
  *
  * Commentaire : C'est dans ce fichier que se situe toute la gestion du
- *               gameplay, qui a t inspir du jeu Greedy (un autre clne de
- *               Pacman) plutt que du Pacman originel de Namco suivant nos
- *               gots personnels. Si le gameplay de convient pas, il suffit
- *               de modifier la mthode doMove().
+ *               gameplay, qui a été inspiré du jeu Greedy (un autre clône de
+ *               Pacman) plutôt que du Pacman originel de Namco suivant nos
+ *               goûts personnels. Si le gameplay de convient pas, il suffit
+ *               de modifier la méthode doMove().
  *
  * ---------------------------------------------------------------------------
  *
  * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
- * modifier conformment aux dispositions de la Licence Publique Gnrale GNU,
- * telle que publie par la Free Software Foundation ; version 2 de la
- * licence, ou encore ( votre convenance) toute version ultrieure.
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
  *
- * Ce programme est distribu dans l'espoir qu'il sera utile, mais SANS AUCUNE
- * GARANTIE ; sans mme la garantie implicite de COMMERCIALISATION ou
- * D'ADAPTATION  UN OBJET PARTICULIER. Pour plus de dtail, voir la Licence
- * Publique Gnrale GNU.
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
  *
- * Vous devez avoir reu un exemplaire de la Licence Publique Gnrale GNU en
- * mme temps que ce programme ; si ce n'est pas le cas, crivez  la Free
- * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, tats-Unis.
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
  *
  * ---------------------------------------------------------------------------
  */
@@ -42,17 +42,14 @@
 // Imports
 import java.awt.Graphics;
 import java.awt.Image;
-import java.awt.Component;
-import java.awt.event.KeyEvent;
-import java.awt.event.KeyListener;
 
 /**
- * La classe Pacman, grant les actions du joueur ainsi que les mouvements et
+ * La classe Pacman, gérant les actions du joueur ainsi que les mouvements et
  * l'affichage du Pacman
  */
-class Pacman extends Character implements KeyListener
+class Pacman extends Character
 {
-    // Variables relatives aux touches appuyes
+    // Variables relatives aux touches appuyées
     private final boolean[] keys = {false, false, false, false};
     private       int       pressed = 0;
 
@@ -61,26 +58,34 @@ class Pacman extends Character implements KeyListener
     private        final Image[][] images;
     private              int       image = 0, nextImage = 1;
 
-    // Variables relatives  l'animation
+    // Variables relatives à l'animation
     private static final int ANIM_FREEZE = 2;
     private              int anim = 0;
 
+    // Dernière pastille mangée
+    private byte eatenGum = Board.BOX_EMPTY;
+
     /**
      * Constructeur de la classe Pacman
      */
-    public Pacman(final Board board, final ImageLoader loader,
-		  final Component component)
+    public Pacman(final Board board, final ImageLoader loader)
     {
 	// Appel du constructeur de la superclasse (classe parente)
 	super(board);
 
-	// Initialisation des variables
-	component.addKeyListener(this);
-
 	// Chargement des sprites
 	images = loader.load("pacman", IMAGES, NB_DIRS);
     }
 
+    /**
+     * Constructeur de la classe Pacman sans affichage
+     */
+    public Pacman(final Board board)
+    {
+	super(board);
+	images = null;
+    }
+
     /**
      * Initialise la position
      */
@@ -89,34 +94,54 @@ class Pacman extends Character implements KeyListener
 	initPosition(false);
     }
 
+    /**
+     * Définit les touches de direction enfoncées, sous la forme d'un masque
+     * de bits où le bit n correspond à la direction n
+     */
+    public void setKeys(final int mask)
+    {
+	pressed = 0;
+	for (int dir = 0; dir < NB_DIRS; dir++)
+	    if ((keys[dir] = (mask & (1 << dir)) != 0))
+		pressed++;
+    }
+
     /**
      * Dessine le Pacman
      */
     public void draw(final Graphics gc)
     {
-	// Teste si on a assez attendu pour passer  l'image suivante
+	// Teste si on a assez attendu pour passer à l'image suivante
 	if (++anim == ANIM_FREEZE) {
-	    // Met  zro le compteur
+	    // Met à zéro le compteur
 	    anim = 0;
 
-	    // Slectionne la prochaine image de l'animation
+	    // Sélectionne la prochaine image de l'animation
 	    image += nextImage;
 
-	    // Si on arrive en bout de srie, on change le sens de l'animation
+	    // Si on arrive en bout de série, on change le sens de l'animation
 	    if (image == 0)
 		nextImage = 1;
 	    else if (image == IMAGES - 1)
 		nextImage = -1;
 	}
 
-	// Finalement, dessine l'image slectione
-	board.drawImage(gc, images[lastDir][image], pos);
+	// Finalement, dessine l'image sélectionée
+	paint(gc);
     }
 
     /**
-     * Mthode appele rgulirement pour ventuellement effectuer un
-     * mouvement et mettre  jour les variables de position ; c'est de cette
-     * mthode que dpend le gameplay
+     * Dessine le Pacman sans l'animer
+     */
+    public void paint(final Graphics gc)
+    {
+	board.drawImage(gc, images[lastDir][image], drawPos);
+    }
+
+    /**
+     * Méthode appelée régulièrement pour éventuellement effectuer un
+     * mouvement et mettre à jour les variables de position ; c'est de cette
+     * méthode que dépend le gameplay
      */
     public void doMove()
     {
@@ -126,13 +151,13 @@ class Pacman extends Character implements KeyListener
 				 (pressed > 0 && !keys[opposite] &&
 				  (offset.x != 0 || offset.y != 0))))
 	    // Si on n'est pas encore au centre d'une case et que le mouvement
-	    // slectionn est diffrent, ou que le mouvement slectionn est
-	    // le mme, on continue dans la mme direction
+	    // sélectionné est différent, ou que le mouvement sélectionné est
+	    // le même, on continue dans la même direction
 	    move(lastDir);
 	else {
 	    int dir;
 
-	    // Sinon, on regarde quelles directions sont slectionnes et on
+	    // Sinon, on regarde quelles directions sont sélectionnées et on
 	    // effectue le mouvement correspondant si c'est possible
 	    for (dir = LEFT; dir <= DOWN; dir++)
 		if (dir != lastDir && keys[dir] && canMove(dir)) {
@@ -140,93 +165,31 @@ class Pacman extends Character implements KeyListener
 		    break;
 		}
 
-	    // Si le mouvement prcdent n'est pas possible mais qu'une touche
-	    // est encore enfonce, on continue dans la direction du dernier
-	    // mouvement effectu, si c'est possible
+	    // Si le mouvement précédent n'est pas possible mais qu'une touche
+	    // est encore enfoncée, on continue dans la direction du dernier
+	    // mouvement effectué, si c'est possible
 	    if (dir > DOWN && pressed > 0 &&
 		canMove(lastDir) && !keys[opposite])
 		move(lastDir);
 	}
 
-	// Si l'on est prs du centre d'une case, mange la pastille qui s'y
+	// Si l'on est près du centre d'une case, mange la pastille qui s'y
 	// trouve
 	if (Math.abs(offset.x) <= boxSize / 4 &&
 	    Math.abs(offset.y) <= boxSize / 4)
-	    board.eatGum(boxPos);
+	    eatenGum = board.eatGum(boxPos);
+	else
+	    eatenGum = Board.BOX_EMPTY;
     }
 
     /**
-     * Choisit une direction parmi les 4 disponible (gauche, droite, haut, bas)
-     * en fonctions du code de la touche pass en paramtre
+     * Obtient le type de la pastille mangée lors du dernier mouvement
+     * (Board.BOX_EMPTY si aucune)
      */
-    private static int selectKey(final int keyCode)
+    public byte getEatenGum()
     {
-	// Gauche : touches flche gauche et 4/gauche du pav numrique
-	switch (keyCode) {
-	case KeyEvent.VK_LEFT:
-	case KeyEvent.VK_KP_LEFT:
-	case KeyEvent.VK_NUMPAD4:
-	    return LEFT;
-
-	// Droite : touches flche droite et 6/droite du pav numrique
-	case KeyEvent.VK_RIGHT:
-	case KeyEvent.VK_KP_RIGHT:
-	case KeyEvent.VK_NUMPAD6:
-	    return RIGHT;
-
-	// Gauche : touches flche haut et 8/haut du pav numrique
-	case KeyEvent.VK_UP:
-	case KeyEvent.VK_KP_UP:
-	case KeyEvent.VK_NUMPAD8:
-	    return UP;
-
-	// Gauche : touches flche bas et 2/bas du pav numrique
-	case KeyEvent.VK_DOWN:
-	case KeyEvent.VK_KP_DOWN:
-	case KeyEvent.VK_NUMPAD2:
-	    return DOWN;
-	}
-
-	// La touche appuye ne correspond pas  une direction
-	return -1;
-    }
-
-    /**
-     * Mthode appele quand une touche est enfonce
-     */
-    public void keyPressed(final KeyEvent event)
-    {
-	// Slectionne une direction si c'est une touche de direction
-	final int key = selectKey(event.getKeyCode());
-
-	// Si c'est une direction, indique qu'elle est entre par l'utilisateur
-	if (key != -1 && !keys[key]) {
-	    keys[key] = true;
-	    pressed++;
-	}
-    }
-
-    /**
-     * Mthode appele quand une touche est relche
-     */
-    public void keyReleased(final KeyEvent event)
-    {
-	// Slectionne une direction si c'est une touche de direction
-	final int key = selectKey(event.getKeyCode());
-
-	// Si c'est une direction, indique qu'elle n'est plus voulue
-	if (key != -1 && keys[key]) {
-	    keys[key] = false;
-	    pressed--;
-	}
+	return eatenGum;
     }
-
-    /**
-     * Mthode appele quand une touche gnre un vnement "entre d'un
-     * caractre", ce qui peut arriver plusieurs fois lors d'un seul
-     * enfoncement de touche  intervalle rgulier (rptition)
-     */
-    public void keyTyped(final KeyEvent event) { /* On ne s'en sert pas */ }
 }
 
 // Fin de fichier
@@ -1,55 +1,55 @@
 /*
  * ---------------------------------------------------------------------------
  *
- * Facman -- Un clne de Pacman en Java
+ * Facman -- Un clône de Pacman en Java
  * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
  *
  * ---------------------------------------------------------------------------
  *
  * Fichier     : Position.java
  *
- * Description : La classe Position permet de grer de manire simple les
- *               coordonnes en deux dimensions ainsi que leur dplacement.
+ * Description : La classe Position permet de gérer de manière simple les
+ *               coordonnées en deux dimensions ainsi que leur déplacement.
  *
- * Commentaire : Cette classe est utilise par de nombreuses autres classes du
+ * Commentaire : Cette classe est utilisée par de nombreuses autres classes du
  *               projet, notamment Pacman, Ghost et Board.
  *
  * ---------------------------------------------------------------------------
  *
  * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
- * modifier conformment aux dispositions de la Licence Publique Gnrale GNU,
- * telle que publie par la Free Software Foundation ; version 2 de la
- * licence, ou encore ( votre convenance) toute version ultrieure.
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
  *
- * Ce programme est distribu dans l'espoir qu'il sera utile, mais SANS AUCUNE
- * GARANTIE ; sans mme la garantie implicite de COMMERCIALISATION ou
- * D'ADAPTATION  UN OBJET PARTICULIER. Pour plus de dtail, voir la Licence
- * Publique Gnrale GNU.
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
  *
- * Vous devez avoir reu un exemplaire de la Licence Publique Gnrale GNU en
- * mme temps que ce programme ; si ce n'est pas le cas, crivez  la Free
- * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, tats-Unis.
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
  *
  * ---------------------------------------------------------------------------
  */
 
 
 /**
- * La classe Position, qui permet de stocker des coordonnes en deux
+ * La classe Position, qui permet de stocker des coordonnées en deux
  * dimensions
  */
 class Position
 {
-    // Coordonnes
+    // Coordonnées
     public int x, y;
 
     /**
-     * Constructeur par dfaut
+     * Constructeur par défaut
      */
     Position() {}
 
     /**
-     * Constructeur  partir de coordonnes
+     * Constructeur à partir de coordonnées
      */
     Position(final int x, final int y)
     {
@@ -57,7 +57,7 @@ class Position
     }
 
     /**
-     * Constructeur  partir d'un objet Position existant
+     * Constructeur à partir d'un objet Position existant
      */
     Position(final Position pos)
     {
@@ -65,7 +65,7 @@ class Position
     }
 
     /**
-     * Affecte les coordonnes de celles passes en paramtres
+     * Affecte les coordonnées de celles passées en paramètres
      */
     public void setPosition(final int x, final int y)
     {
@@ -74,7 +74,7 @@ class Position
     }
 
     /**
-     * Affecte les coordonnes de celles d'un objet Position existant
+     * Affecte les coordonnées de celles d'un objet Position existant
      */
     public void setPosition(final Position pos)
     {
@@ -83,7 +83,7 @@ class Position
     }
 
     /**
-     * Ajoute les coordonnes passes en paramtres  celles courantes
+     * Ajoute les coordonnées passées en paramètres à celles courantes
      */
     public void move(final int x, final int y)
     {
@@ -92,7 +92,7 @@ class Position
     }
 
     /**
-     * Ajoute les coordonnes d'un objet Position existant  celles courantes
+     * Ajoute les coordonnées d'un objet Position existant à celles courantes
      */
     public void move(final Position pos)
     {
@@ -101,7 +101,7 @@ class Position
     }
 
     /**
-     * Teste l'galit entre deux objets Position
+     * Teste l'égalité entre deux objets Position
      */
     public boolean equals(final Position pos)
     {
@@ -109,9 +109,9 @@ class Position
     }
 
     /**
-     * Cre un tableau de 4 objets Position, chacun reprsentant une des
-     * quatre directions, dont la distance par rapport  la coordonne (0, 0)
-     * est spcifie en paramtre
+     * Crée un tableau de 4 objets Position, chacun représentant une des
+     * quatre directions, dont la distance par rapport à la coordonnée (0, 0)
+     * est spécifiée en paramètre
      */
     public static Position[] makeDirs(final int size)
     {
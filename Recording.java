@@ -0,0 +1,333 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : Recording.java
+ *
+ * Description : La classe Recording enregistre les touches transmises à chaque
+ *               tour d'une partie, et permet de la rejouer à l'identique.
+ *
+ * Commentaire : Une partie ne dépend que de sa difficulté, de sa graine (voir
+ *               GameRandom) et des touches de chaque tour : l'enregistrement,
+ *               qui ne contient que cela, la rejoue sans affichage et aussi
+ *               vite que possible, ce qui permet d'en faire un test de
+ *               non-régression. Les niveaux doivent être les mêmes que lors de
+ *               l'enregistrement.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+// Imports
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * La classe Recording, enregistrement d'une partie.
+ *
+ * Format (entiers de 4 et 8 octets, poids fort en premier) :
+ * - en-tête : signature, version, difficulté, graine (8 octets), nombre
+ *   de tours, puis résultat de la partie : niveau atteint, score et vies
+ *   restantes (voir ReplayVerifier) ;
+ * - touches : suite de plages de tours, chacune formée d'un octet (masque
+ *   des touches de direction, voir Simulation.step()) et du nombre de
+ *   tours, codé sur 7 bits par octet (le bit de poids fort indiquant
+ *   qu'un octet suit).
+ *
+ * Les tours où la simulation attend le joueur ne sont pas enregistrés :
+ * ils ne modifient rien.
+ */
+class Recording
+{
+    // Signature ("FREC") et version du format
+    private static final int MAGIC = 0x46524543, VERSION = 2;
+
+    // Difficulté et graine de la partie
+    private int  difficulty;
+    private long seed;
+
+    // Touches de chaque tour
+    private byte[] keys = new byte[1024];
+    private int    ticks = 0;
+
+    // Résultat de la partie enregistrée
+    private int level, score, lives;
+
+    /**
+     * Commence un nouvel enregistrement
+     */
+    public void start(final int difficulty, final long seed)
+    {
+	this.difficulty = difficulty;
+	this.seed       = seed;
+	ticks = 0;
+    }
+
+    /**
+     * Ajoute les touches transmises lors d'un tour
+     */
+    public void add(final int mask)
+    {
+	if (ticks == keys.length) {
+	    final byte[] larger = new byte[keys.length * 2];
+	    System.arraycopy(keys, 0, larger, 0, ticks);
+	    keys = larger;
+	}
+	keys[ticks++] = (byte) mask;
+    }
+
+    /**
+     * Oublie les derniers tours enregistrés, après un retour en arrière
+     * (voir Simulation.rewind())
+     */
+    public void truncate(final int count)
+    {
+	ticks = Math.max(ticks - count, 0);
+    }
+
+    /**
+     * Obtient les touches transmises lors d'un tour
+     */
+    public int getKeys(final int tick)
+    {
+	return keys[tick];
+    }
+
+    /**
+     * Obtient le nombre de tours enregistrés
+     */
+    public int getTicks()
+    {
+	return ticks;
+    }
+
+    /**
+     * Note le résultat de la partie, à la fin de celle-ci
+     */
+    public void setResult(final Simulation simulation)
+    {
+	level = simulation.getBoard().getLevel();
+	score = simulation.getScore();
+	lives = simulation.getLives();
+    }
+
+    /**
+     * Obtient le niveau atteint lors de la partie enregistrée
+     */
+    public int getLevel()
+    {
+	return level;
+    }
+
+    /**
+     * Obtient le score final de la partie enregistrée
+     */
+    public int getScore()
+    {
+	return score;
+    }
+
+    /**
+     * Obtient le nombre de vies restantes à la fin de la partie enregistrée
+     * (négatif si elle est perdue)
+     */
+    public int getLives()
+    {
+	return lives;
+    }
+
+    /**
+     * Obtient la graine de la partie
+     */
+    public long getSeed()
+    {
+	return seed;
+    }
+
+    /**
+     * Rejoue la partie sans affichage, du premier niveau jusqu'au dernier
+     * tour enregistré, en enchaînant les niveaux et les vies comme le
+     * jeu ; retourne le nombre de tours joués
+     */
+    public int play(final Simulation simulation)
+    {
+	final ReplayController replay = new ReplayController(this);
+
+	simulation.setDifficulty(difficulty);
+	simulation.setSeed(seed);
+	simulation.setController(replay);
+	simulation.resetGame();
+	if (!simulation.nextLevel())
+	    return 0;
+
+	while (!replay.isDone()) {
+	    final int events = simulation.step();
+
+	    if ((events & (Simulation.EVENT_WON |
+			   Simulation.EVENT_EATEN)) != 0 &&
+		!simulation.endLevel())
+		break;
+	}
+	return replay.getTick();
+    }
+
+    /**
+     * Écrit l'enregistrement
+     */
+    public void write(final OutputStream stream) throws IOException
+    {
+	final DataOutputStream out = new DataOutputStream(stream);
+
+	// En-tête
+	out.writeInt(MAGIC);
+	out.writeInt(VERSION);
+	out.writeInt(difficulty);
+	out.writeLong(seed);
+	out.writeInt(ticks);
+	out.writeInt(level);
+	out.writeInt(score);
+	out.writeInt(lives);
+
+	// Plages de tours
+	for (int start = 0, end; start < ticks; start = end) {
+	    for (end = start + 1; end < ticks && keys[end] == keys[start];
+		 end++);
+	    out.writeByte(keys[start]);
+
+	    int count = end - start;
+	    while (count >= 0x80) {
+		out.writeByte(count & 0x7f | 0x80);
+		count >>>= 7;
+	    }
+	    out.writeByte(count);
+	}
+	out.flush();
+    }
+
+    /**
+     * Lit un enregistrement
+     */
+    public static Recording read(final InputStream stream) throws IOException
+    {
+	final DataInputStream in = new DataInputStream(stream);
+	final Recording       recording = new Recording();
+
+	// En-tête
+	if (in.readInt() != MAGIC || in.readInt() != VERSION)
+	    throw new IOException("Enregistrement invalide");
+	recording.difficulty = in.readInt();
+	recording.seed       = in.readLong();
+	final int ticks      = in.readInt();
+	recording.level      = in.readInt();
+	recording.score      = in.readInt();
+	recording.lives      = in.readInt();
+	if (ticks < 0)
+	    throw new IOException("Enregistrement invalide");
+
+	// Plages de tours
+	while (recording.ticks < ticks) {
+	    final byte mask = in.readByte();
+	    int count = 0, shift = 0, value;
+	    do {
+		value  = in.readUnsignedByte();
+		count |= (value & 0x7f) << shift;
+		shift += 7;
+	    } while ((value & 0x80) != 0 && shift < 32);
+
+	    if (count <= 0 || count > ticks - recording.ticks)
+		throw new IOException("Enregistrement invalide");
+	    while (count-- > 0)
+		recording.add(mask);
+	}
+	return recording;
+    }
+
+    /**
+     * Lit un enregistrement dans un fichier
+     */
+    public static Recording read(final File file) throws IOException
+    {
+	final InputStream in =
+	    new BufferedInputStream(new FileInputStream(file));
+	try {
+	    return read(in);
+	} finally {
+	    in.close();
+	}
+    }
+
+    /**
+     * Écrit l'enregistrement dans un fichier
+     */
+    public void write(final File file) throws IOException
+    {
+	final OutputStream out =
+	    new BufferedOutputStream(new FileOutputStream(file));
+	try {
+	    write(out);
+	} finally {
+	    out.close();
+	}
+    }
+
+    /**
+     * Rejoue sans affichage les parties enregistrées dans les fichiers
+     * indiqués, et affiche pour chacune le niveau atteint, le score et les
+     * vies restantes
+     */
+    public static void main(final String argv[]) throws IOException
+    {
+	if (argv.length == 0) {
+	    System.err.println("Utilisation : java Recording <fichier>...");
+	    System.exit(1);
+	}
+
+	final Board board = new Board();
+	board.loadLevels();
+	final Simulation simulation = new Simulation(board);
+
+	for (int i = 0; i < argv.length; i++) {
+	    final Recording recording = read(new File(argv[i]));
+	    final long      start = System.nanoTime();
+	    final int       played = recording.play(simulation);
+	    final long      time = System.nanoTime() - start;
+
+	    System.out.println(argv[i] + " : " + played + " tour(s), niveau " +
+			       board.getLevel() + ", score " +
+			       simulation.getScore() + ", vies " +
+			       Math.max(simulation.getLives(), 0) + " (" +
+			       time / 1000000 + " ms)");
+	}
+    }
+}
+
+// Fin du fichier
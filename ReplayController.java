@@ -0,0 +1,80 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : ReplayController.java
+ *
+ * Description : La classe ReplayController pilote Pacman en rejouant les
+ *               touches d'une partie enregistrée.
+ *
+ * Commentaire : Voir Recording ; une fois tous les tours rejoués, plus aucune
+ *               touche n'est enfoncée.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+/**
+ * La classe ReplayController, contrôleur rejouant un enregistrement
+ */
+class ReplayController implements Controller
+{
+    // Enregistrement rejoué et prochain tour à rejouer
+    private final Recording recording;
+    private       int       tick = 0;
+
+    /**
+     * Constructeur de la classe ReplayController
+     */
+    public ReplayController(final Recording recording)
+    {
+	this.recording = recording;
+    }
+
+    /**
+     * Obtient les touches du tour suivant de l'enregistrement
+     */
+    public int getKeys(final Simulation simulation)
+    {
+	return tick < recording.getTicks() ? recording.getKeys(tick++) : 0;
+    }
+
+    /**
+     * Permet de savoir si tous les tours ont été rejoués
+     */
+    public boolean isDone()
+    {
+	return tick >= recording.getTicks();
+    }
+
+    /**
+     * Obtient le nombre de tours déjà rejoués
+     */
+    public int getTick()
+    {
+	return tick;
+    }
+}
+
+// Fin du fichier
@@ -0,0 +1,194 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : ReplayVerifier.java
+ *
+ * Description : La classe ReplayVerifier rejoue sans affichage tous les
+ *               enregistrements de parties d'un répertoire, sur tous les
+ *               processeurs, et signale ceux dont le résultat diffère.
+ *
+ * Commentaire : Chaque thread du pool fork/join garde sa propre simulation
+ *               (grille, Pacman et fantômes sans images) ; les parties sont
+ *               réparties par divisions successives de la liste des fichiers.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+// Imports
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * La classe ReplayVerifier, vérification en parallèle d'enregistrements
+ * de parties (voir Recording) : chacun doit, une fois rejoué, atteindre le
+ * même nombre de tours, le même niveau, le même score et le même nombre de
+ * vies que lors de l'enregistrement.
+ */
+class ReplayVerifier
+{
+    // Nombre de parties en dessous duquel une tâche n'est plus divisée
+    private static final int THRESHOLD = 8;
+
+    // Simulation de chaque thread, créée à sa première partie
+    private static final ThreadLocal SIMULATION = new ThreadLocal() {
+	    protected Object initialValue()
+	    {
+		final Board board = new Board();
+		board.loadLevels();
+		return new Simulation(board);
+	    }
+	};
+
+    /**
+     * Tâche vérifiant une partie de la liste des fichiers ; le résultat de
+     * chaque fichier (null s'il est correct, la description de la
+     * divergence sinon) est écrit dans le tableau commun, à son indice
+     */
+    private static class Task extends RecursiveAction
+    {
+	private final File[]   files;
+	private final String[] results;
+	private final int      start, end;
+
+	Task(final File[] files, final String[] results, final int start,
+	     final int end)
+	{
+	    this.files   = files;
+	    this.results = results;
+	    this.start   = start;
+	    this.end     = end;
+	}
+
+	protected void compute()
+	{
+	    if (end - start <= THRESHOLD) {
+		for (int i = start; i < end; i++)
+		    results[i] = verify(files[i]);
+		return;
+	    }
+
+	    final int middle = (start + end) >>> 1;
+	    invokeAll(new Task(files, results, start, middle),
+		      new Task(files, results, middle, end));
+	}
+    }
+
+    /**
+     * Constructeur privé : classe utilitaire
+     */
+    private ReplayVerifier() {}
+
+    /**
+     * Rejoue une partie avec la simulation du thread courant ; retourne
+     * null si son résultat est celui enregistré, la description des
+     * différences sinon
+     */
+    static String verify(final File file)
+    {
+	final Recording recording;
+	try {
+	    recording = Recording.read(file);
+	} catch (IOException e) {
+	    return "illisible (" + e.getMessage() + ")";
+	}
+
+	final Simulation simulation = (Simulation) SIMULATION.get();
+	final int        played = recording.play(simulation);
+	final int        level = simulation.getBoard().getLevel();
+	final StringBuffer diff = new StringBuffer();
+
+	compare(diff, "tours", played, recording.getTicks());
+	compare(diff, "niveau", level, recording.getLevel());
+	compare(diff, "score", simulation.getScore(), recording.getScore());
+	compare(diff, "vies", simulation.getLives(), recording.getLives());
+	return diff.length() > 0 ? diff.toString() : null;
+    }
+
+    /**
+     * Ajoute à la description des différences une valeur obtenue qui n'est
+     * pas celle attendue
+     */
+    private static void compare(final StringBuffer diff, final String name,
+				final int value, final int expected)
+    {
+	if (value == expected)
+	    return;
+	if (diff.length() > 0)
+	    diff.append(", ");
+	diff.append(name + " " + value + " au lieu de " + expected);
+    }
+
+    /**
+     * Vérifie tous les fichiers .rec du répertoire indiqué ; le code de
+     * retour vaut 1 si au moins une partie diverge
+     */
+    public static void main(final String argv[])
+    {
+	if (argv.length != 1) {
+	    System.err.println("Utilisation : java ReplayVerifier " +
+			       "<répertoire>");
+	    System.exit(2);
+	}
+
+	// Liste des enregistrements, dans l'ordre alphabétique
+	final File[] files = new File(argv[0]).listFiles();
+	if (files == null) {
+	    System.err.println("Répertoire illisible : " + argv[0]);
+	    System.exit(2);
+	}
+	int count = 0;
+	for (int i = 0; i < files.length; i++)
+	    if (files[i].isFile() && files[i].getName().endsWith(".rec"))
+		files[count++] = files[i];
+	final File[] records = new File[count];
+	System.arraycopy(files, 0, records, 0, count);
+	Arrays.sort(records);
+
+	// Vérification en parallèle
+	final ForkJoinPool pool = new ForkJoinPool();
+	final String[]     results = new String[count];
+	final long         start = System.nanoTime();
+	pool.invoke(new Task(records, results, 0, count));
+	final long         time = (System.nanoTime() - start) / 1000000;
+
+	// Divergences
+	int diverged = 0;
+	for (int i = 0; i < count; i++)
+	    if (results[i] != null) {
+		System.out.println(records[i] + " : " + results[i]);
+		diverged++;
+	    }
+	System.out.println(count + " partie(s) vérifiée(s) en " + time +
+			   " ms sur " + pool.getParallelism() +
+			   " thread(s), " + diverged + " divergence(s)");
+	System.exit(diverged > 0 ? 1 : 0);
+    }
+}
+
+// Fin du fichier
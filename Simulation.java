@@ -0,0 +1,517 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : Simulation.java
+ *
+ * Description : La classe Simulation applique les règles du jeu (déplacement
+ *               des personnages, pastilles, collisions, apparition des
+ *               fantômes, victoire et défaite) tour par tour.
+ *
+ * Commentaire : Cette classe ne fait aucun affichage : elle peut être
+ *               utilisée sans fenêtre pour simuler des parties aussi vite
+ *               que possible. La classe Game s'en sert pour le jeu
+ *               lui-même.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+/**
+ * La classe Simulation, qui fait avancer le jeu d'un tour à chaque appel de
+ * step() sans rien afficher
+ */
+class Simulation
+{
+    // Événements pouvant survenir lors d'un tour (combinables)
+    public static final int EVENT_NONE    = 0;
+    public static final int EVENT_WAITING = 1;  // Attente du joueur
+    public static final int EVENT_SCORE   = 2;  // Le score a changé
+    public static final int EVENT_EATEN   = 4;  // Pacman a été mangé
+    public static final int EVENT_WON     = 8;  // Niveau terminé
+    public static final int EVENT_LOST    = 16; // Partie perdue
+
+    // Personnages : Pacman et les fantômes
+    static         final int     MAX_NB_GHOSTS = 4;
+    private        final Pacman  pacman;
+    private        final Ghost[] ghosts;
+
+    // Pile pour l'apparition des fantômes
+    private static final int   BIRTH_DELAY = 150;
+    private        final int[] ghostStack = new int[MAX_NB_GHOSTS];
+    private              int   stackSize = 0, stackStart = 0;
+    private              int   birth = 0;
+
+    // Variables utilisées pour le calcul du score et des vies
+    private static final int SCORE_GUM = 1, SCORE_SUPERGUM = 5;
+    private static final int SCORE_EAT = 10, SCORE_EATEN = 10;
+    private static final int SCORE_LEVEL = 50;
+    private              int score = 0, lives;
+
+    // Le joueur a-t-il commencé à jouer ?
+    private boolean playing;
+
+    // Source des touches de direction (voir step()), et touches transmises
+    // lors du dernier tour
+    private Controller controller = null;
+    private int        keys = 0;
+
+    // Niveau de difficulté et tirages aléatoires des fantômes, qui ne
+    // dépendent que de la graine de la partie (voir Recording)
+    private       int        difficulty = 1;
+    private final GameRandom random = new GameRandom(0);
+
+    // Grille de jeu
+    private final Board board;
+
+    // Historique des derniers tours, permettant de revenir en arrière
+    // (null si non utilisé), et nombre d'entiers nécessaires pour
+    // enregistrer l'état de la simulation (voir saveState())
+    private              History history = null;
+    static         final int     STATE_SIZE = Character.STATE_SIZE +
+	MAX_NB_GHOSTS * (Ghost.STATE_SIZE + 1) + 8;
+
+    /**
+     * Constructeur de la classe Simulation à partir de personnages existants
+     */
+    public Simulation(final Board board, final Pacman pacman,
+		      final Ghost[] ghosts)
+    {
+	this.board  = board;
+	this.pacman = pacman;
+	this.ghosts = ghosts;
+	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
+	    ghosts[ghost].setRandom(random);
+    }
+
+    /**
+     * Constructeur de la classe Simulation sans affichage : les personnages
+     * sont créés sans leurs sprites
+     */
+    public Simulation(final Board board)
+    {
+	this.board = board;
+	pacman = new Pacman(board);
+	ghosts = new Ghost[MAX_NB_GHOSTS];
+	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++) {
+	    ghosts[ghost] = new Ghost(board, pacman);
+	    ghosts[ghost].setRandom(random);
+	}
+    }
+
+    /**
+     * Définit le niveau de difficulté
+     */
+    public void setDifficulty(final int difficulty)
+    {
+	this.difficulty = difficulty;
+	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
+	    ghosts[ghost].setDifficulty(difficulty);
+    }
+
+    /**
+     * Définit le contrôleur interrogé à chaque tour par step()
+     */
+    public void setController(final Controller controller)
+    {
+	this.controller = controller;
+    }
+
+    /**
+     * Obtient les touches transmises à Pacman lors du dernier tour
+     */
+    public int getKeys()
+    {
+	return keys;
+    }
+
+    /**
+     * Obtient le niveau de difficulté
+     */
+    public int getDifficulty()
+    {
+	return difficulty;
+    }
+
+    /**
+     * Réinitialise les tirages aléatoires à partir d'une graine ; une
+     * partie commencée avec la même graine, la même difficulté et les
+     * mêmes touches à chaque tour se déroule à l'identique
+     */
+    public void setSeed(final long seed)
+    {
+	random.setSeed(seed);
+    }
+
+    /**
+     * Définit l'historique dans lequel enregistrer chaque tour, ou null
+     * pour ne pas en tenir
+     */
+    public void setHistory(final History history)
+    {
+	this.history = history;
+	if (history != null)
+	    history.clear();
+    }
+
+    /**
+     * Réinitialise le score, les vies et le compteur de niveaux ;
+     * nextLevel() doit être appelée ensuite pour charger le premier niveau
+     */
+    public void resetGame()
+    {
+	board.resetLevel();
+	score = -SCORE_LEVEL;
+	lives = 1;
+	if (history != null)
+	    history.clear();
+    }
+
+    /**
+     * Commence une partie directement au niveau indiqué (à partir de 0)
+     */
+    public boolean startLevel(final int number)
+    {
+	resetGame();
+	board.setLevel(number);
+	return nextLevel();
+    }
+
+    /**
+     * Passe au niveau suivant
+     */
+    public boolean nextLevel()
+    {
+	// Charge le niveau suivant
+	if (!board.nextLevel())
+	    return false;
+
+	// Initialise la position des personnages ; les tours du niveau
+	// précédent sont oubliés
+	initCharacters();
+	if (history != null)
+	    history.clear();
+
+	// Mise à jour du score et des vies
+	score += SCORE_LEVEL;
+	lives++;
+	return true;
+    }
+
+    /**
+     * Recommence le niveau courant sans le recharger : les pastilles et
+     * les personnages sont remis en place, le score et les vies sont
+     * conservés
+     */
+    public void restartLevel()
+    {
+	board.restartLevel();
+	initCharacters();
+	if (history != null)
+	    history.clear();
+    }
+
+    /**
+     * Revient au début du tour joué ticks tours plus tôt, dans la limite
+     * de l'historique ; retourne le nombre de tours annulés
+     */
+    public int rewind(final int ticks)
+    {
+	return history != null ? history.rewind(this, ticks) : 0;
+    }
+
+    /**
+     * Enregistre l'état complet de la simulation dans un tableau à partir
+     * de l'indice indiqué : personnages, pile d'apparition des fantômes,
+     * score, vies et état du générateur aléatoire. Les pastilles ne sont
+     * pas enregistrées : History ne note que celles mangées à chaque tour.
+     */
+    void saveState(final int[] state, int index)
+    {
+	index = pacman.saveState(state, index);
+	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++) {
+	    index = ghosts[ghost].saveState(state, index);
+	    state[index++] = ghostStack[ghost];
+	}
+	state[index++] = stackSize;
+	state[index++] = stackStart;
+	state[index++] = birth;
+	state[index++] = score;
+	state[index++] = lives;
+	state[index++] = (int) (random.getState() >>> 32);
+	state[index++] = (int) random.getState();
+	state[index]   = playing ? 1 : 0;
+    }
+
+    /**
+     * Restaure un état enregistré par saveState()
+     */
+    void restoreState(final int[] state, final int index)
+    {
+	restoreState(state, index, false);
+    }
+
+    /**
+     * Restaure l'état de la fin d'un tour joué par le serveur (voir
+     * GameClient), en gardant les positions précédentes des personnages
+     * pour l'affichage interpolé
+     */
+    void receiveState(final int[] state, final int index)
+    {
+	restoreState(state, index, true);
+    }
+
+    /**
+     * Restaure un état enregistré par saveState() ; si received est vrai,
+     * les personnages gardent leur position courante comme position du
+     * tour précédent
+     */
+    private void restoreState(final int[] state, int index,
+			      final boolean received)
+    {
+	index = received ? pacman.receiveState(state, index)
+			 : pacman.restoreState(state, index);
+	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++) {
+	    index = received ? ghosts[ghost].receiveState(state, index)
+			     : ghosts[ghost].restoreState(state, index);
+	    ghostStack[ghost] = state[index++];
+	}
+	stackSize  = state[index++];
+	stackStart = state[index++];
+	birth      = state[index++];
+	score      = state[index++];
+	lives      = state[index++];
+	random.setState((long) state[index] << 32 |
+			state[index + 1] & 0xffffffffL);
+	index     += 2;
+	playing    = state[index] != 0;
+    }
+
+    /**
+     * Initialise l'état et la position de chaque personnage
+     */
+    public void initCharacters()
+    {
+	// Initialise la position des personnages
+	pacman.initPosition();
+	ghosts[0].undie();
+	for (int ghost = 1; ghost < MAX_NB_GHOSTS; ghost++) {
+	    ghosts[ghost].die();
+	    ghostStack[ghost - 1] = ghost;
+	}
+
+	// Initialise la pile d'apparition des fantômes
+	stackSize = MAX_NB_GHOSTS - 1;
+	stackStart = 0;
+	birth = BIRTH_DELAY;
+
+	// Met le jeu en attente d'action de l'utilisateur
+	playing = false;
+    }
+
+    /**
+     * Méthode à appeler après un tour ayant retourné EVENT_WON ou
+     * EVENT_EATEN : passe au niveau suivant ou replace les personnages ;
+     * retourne false si la partie est terminée
+     */
+    public boolean endLevel()
+    {
+	// Victoire
+	if (isLevelWon())
+	    return nextLevel();
+
+	// Pacman a été mangé mais il lui reste des vies
+	if (!isGameOver()) {
+	    initCharacters();
+	    return true;
+	}
+
+	// Perdu
+	return false;
+    }
+
+    /**
+     * Effectue un tour de jeu avec les touches du contrôleur, interrogé une
+     * fois par tour ; retourne la combinaison des événements survenus
+     */
+    public int step()
+    {
+	return step(controller.getKeys(this));
+    }
+
+    /**
+     * Effectue un tour de jeu ; keys est le masque des touches de direction
+     * enfoncées (le bit n correspond à la direction n). Retourne la
+     * combinaison des événements survenus pendant le tour.
+     */
+    public int step(final int keys)
+    {
+	int events = EVENT_NONE;
+	this.keys = keys;
+
+	// Le jeu ne commence qu'une fois une touche de direction enfoncée
+	if (!playing && keys == 0)
+	    return EVENT_WAITING;
+
+	// Enregistre l'état au début du tour (revenir au premier tour remet
+	// donc le jeu en attente du joueur)
+	if (history != null)
+	    history.save(this);
+	playing = true;
+
+	// Effectue le mouvement de chaque personnage, en mémorisant les
+	// positions précédentes pour l'affichage interpolé
+	for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++) {
+	    ghosts[ghost].savePosition();
+	    ghosts[ghost].doMove();
+	}
+	pacman.savePosition();
+	pacman.setKeys(keys);
+	pacman.doMove();
+	if (history != null && pacman.getEatenGum() != Board.BOX_EMPTY)
+	    history.setEatenGum(pacman.getBoxPosition());
+
+	// Pastille éventuellement mangée par Pacman
+	switch (pacman.getEatenGum()) {
+	case Board.BOX_GUM:
+	    // Pastille normale
+	    score += SCORE_GUM;
+	    events |= EVENT_SCORE;
+	    break;
+
+	case Board.BOX_SUPERGUM:
+	    // Super pastille
+	    score += SCORE_SUPERGUM;
+	    events |= EVENT_SCORE;
+	    for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
+		ghosts[ghost].fear();
+	}
+
+	// Fait "renaître" les fantômes "morts"
+	if (stackSize > 0) {
+	    if (birth > 0)
+		birth--;
+	    else {
+		ghosts[ghostStack[stackStart]].undie();
+		stackStart = (stackStart + 1) % MAX_NB_GHOSTS;
+		stackSize--;
+		birth = BIRTH_DELAY;
+	    }
+	}
+
+	// Teste s'il y a une fin de partie
+	if (board.getGumCount() == 0)
+	    // Gagné !
+	    events |= EVENT_WON;
+	else
+	    // Teste les collisions
+	    for (int ghost = 0; ghost < MAX_NB_GHOSTS; ghost++)
+		if (!ghosts[ghost].isDead() &&
+		    pacman.collides(ghosts[ghost])) {
+		    if (ghosts[ghost].isAfraid()) {
+			// Pacman mange le fantôme
+			score += SCORE_EAT;
+			ghosts[ghost].die();
+			ghostStack[(stackStart + stackSize++) % MAX_NB_GHOSTS]
+			    = ghost;
+		    } else {
+			// Le fantôme mange Pacman
+			if ((score -= SCORE_EATEN) < 0)
+			    score = 0;
+			if (--lives < 0)
+			    events |= EVENT_LOST;
+			events |= EVENT_EATEN;
+		    }
+		    events |= EVENT_SCORE;
+		}
+
+	return events;
+    }
+
+    /**
+     * Permet de savoir si toutes les pastilles du niveau ont été mangées
+     */
+    public boolean isLevelWon()
+    {
+	return board.getGumCount() == 0;
+    }
+
+    /**
+     * Permet de savoir si Pacman n'a plus de vie
+     */
+    public boolean isGameOver()
+    {
+	return lives < 0;
+    }
+
+    /**
+     * Permet de savoir si le joueur a commencé à jouer
+     */
+    public boolean isPlaying()
+    {
+	return playing;
+    }
+
+    /**
+     * Obtient le score
+     */
+    public int getScore()
+    {
+	return score;
+    }
+
+    /**
+     * Obtient le nombre de vies restant
+     */
+    public int getLives()
+    {
+	return lives;
+    }
+
+    /**
+     * Obtient la grille de jeu
+     */
+    public Board getBoard()
+    {
+	return board;
+    }
+
+    /**
+     * Obtient Pacman
+     */
+    public Pacman getPacman()
+    {
+	return pacman;
+    }
+
+    /**
+     * Obtient un des fantômes
+     */
+    public Ghost getGhost(final int ghost)
+    {
+	return ghosts[ghost];
+    }
+}
+
+// Fin du fichier
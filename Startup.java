@@ -0,0 +1,178 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : Startup.java
+ *
+ * Description : La classe Startup exécute les tâches de chargement du
+ *               démarrage (images, niveaux) en parallèle sur un groupe de
+ *               threads et suit leur avancement.
+ *
+ * Commentaire : Les notifications d'avancement et de fin sont exécutées dans
+ *               le thread des événements, où elles peuvent dessiner sans
+ *               risque.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import java.awt.EventQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * La classe Startup, chargement parallèle des données du jeu
+ */
+class Startup
+{
+    // Groupe de threads exécutant les tâches
+    private final ExecutorService executor;
+
+    // Nombre de tâches soumises et terminées, première erreur survenue
+    private int       total = 0, done = 0;
+    private Throwable error = null;
+
+    // Objets prévenus de l'avancement et de la fin du chargement ; la fin
+    // n'est signalée qu'une fois whenDone() appelée
+    private Runnable progressListener = null, doneListener = null;
+
+    /**
+     * Constructeur ; un thread est créé par processeur
+     */
+    public Startup()
+    {
+	executor = Executors.newFixedThreadPool(
+	    Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+		    public Thread newThread(final Runnable task)
+		    {
+			final Thread thread = new Thread(task, "Chargement");
+			thread.setDaemon(true);
+			return thread;
+		    }
+		});
+    }
+
+    /**
+     * Soumet une tâche de chargement
+     */
+    public synchronized void submit(final Runnable task)
+    {
+	total++;
+	executor.execute(new Runnable() {
+		public void run()
+		{
+		    try {
+			task.run();
+		    } catch (RuntimeException e) {
+			fail(e);
+		    } catch (Error e) {
+			fail(e);
+		    } finally {
+			finished();
+		    }
+		}
+	    });
+    }
+
+    /**
+     * Mémorise la première erreur survenue
+     */
+    private synchronized void fail(final Throwable e)
+    {
+	if (error == null)
+	    error = e;
+    }
+
+    /**
+     * Méthode appelée à la fin de chaque tâche
+     */
+    private synchronized void finished()
+    {
+	done++;
+	if (progressListener != null)
+	    EventQueue.invokeLater(progressListener);
+	checkDone();
+    }
+
+    /**
+     * Signale la fin du chargement si toutes les tâches sont terminées
+     */
+    private void checkDone()
+    {
+	if (doneListener == null || done < total)
+	    return;
+
+	// Une erreur est relancée dans le thread des événements
+	final Runnable listener = doneListener;
+	final Throwable failure = error;
+	doneListener = null;
+	executor.shutdown();
+	EventQueue.invokeLater(new Runnable() {
+		public void run()
+		{
+		    if (failure != null)
+			throw new IllegalStateException(
+			    "Chargement impossible : " + failure);
+		    listener.run();
+		}
+	    });
+    }
+
+    /**
+     * Définit l'objet prévenu après chaque tâche terminée
+     */
+    public synchronized void setProgressListener(final Runnable listener)
+    {
+	progressListener = listener;
+    }
+
+    /**
+     * Définit l'objet prévenu une fois toutes les tâches terminées ; plus
+     * aucune tâche ne doit être soumise ensuite
+     */
+    public synchronized void whenDone(final Runnable listener)
+    {
+	doneListener = listener;
+	checkDone();
+    }
+
+    /**
+     * Obtient le nombre de tâches terminées
+     */
+    public synchronized int getDone()
+    {
+	return done;
+    }
+
+    /**
+     * Obtient le nombre de tâches soumises
+     */
+    public synchronized int getTotal()
+    {
+	return total;
+    }
+}
+
+// Fin du fichier
@@ -0,0 +1,144 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : TickHistogram.java
+ *
+ * Description : La classe TickHistogram enregistre des durées dans un
+ *               histogramme à intervalles logarithmiques, à partir duquel sont
+ *               calculés les centiles publiés par JMX.
+ *
+ * Commentaire : Chaque puissance de deux est découpée en huit intervalles, ce
+ *               qui donne une précision de 12,5 % pour un coût
+ *               d'enregistrement constant et sans allocation, quelle que soit
+ *               la durée.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+/**
+ * La classe TickHistogram, histogramme de durées en nanosecondes
+ */
+public class TickHistogram implements TickHistogramMBean
+{
+    // Nombre d'intervalles par puissance de deux (2^SUB_BITS)
+    private static final int SUB_BITS = 3, SUB = 1 << SUB_BITS;
+    private static final int BUCKETS  = (64 - SUB_BITS) * SUB;
+
+    // Nombre de mesures par intervalle et statistiques globales
+    private final long[] counts = new long[BUCKETS];
+    private       long   count, total, max, overruns;
+
+    // Durée au-delà de laquelle une mesure est un dépassement
+    private final long threshold;
+
+    /**
+     * Constructeur ; le seuil de dépassement est en nanosecondes
+     */
+    public TickHistogram(final long threshold)
+    {
+	this.threshold = threshold;
+    }
+
+    /**
+     * Obtient l'intervalle contenant une durée
+     */
+    private static int index(final long value)
+    {
+	if (value < SUB)
+	    return (int) Math.max(value, 0);
+
+	final int octave = 63 - Long.numberOfLeadingZeros(value);
+	return (octave - SUB_BITS + 1) * SUB +
+	    (int) ((value >>> (octave - SUB_BITS)) & (SUB - 1));
+    }
+
+    /**
+     * Obtient la borne supérieure d'un intervalle
+     */
+    private static long upperBound(final int index)
+    {
+	if (index < SUB)
+	    return index;
+
+	final int shift = index / SUB - 1;
+	return ((long) (SUB + index % SUB) << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * Enregistre une durée
+     */
+    public synchronized void record(final long time)
+    {
+	counts[index(time)]++;
+	count++;
+	total += time;
+	if (time > max)
+	    max = time;
+	if (time > threshold)
+	    overruns++;
+    }
+
+    /**
+     * Obtient la durée en dessous de laquelle se trouve une proportion donnée
+     * (entre 0 et 1) des mesures, en nanosecondes
+     */
+    public synchronized long getPercentile(final double ratio)
+    {
+	if (count == 0)
+	    return 0;
+
+	final long target = Math.max((long) Math.ceil(ratio * count), 1);
+	long       seen   = 0;
+
+	for (int i = 0; i < BUCKETS; i++)
+	    if ((seen += counts[i]) >= target)
+		return Math.min(upperBound(i), max);
+	return max;
+    }
+
+    /*
+     * Méthodes de l'interface TickHistogramMBean
+     */
+    public synchronized long getCount() { return count; }
+    public synchronized long getMeanMicros()
+    {
+	return count == 0 ? 0 : total / count / 1000;
+    }
+    public synchronized long getMaxMicros() { return max / 1000; }
+    public long getP50Micros() { return getPercentile(.50) / 1000; }
+    public long getP90Micros() { return getPercentile(.90) / 1000; }
+    public long getP99Micros() { return getPercentile(.99) / 1000; }
+    public synchronized long getOverrunCount() { return overruns; }
+    public long getOverrunThresholdMicros() { return threshold / 1000; }
+
+    public synchronized void reset()
+    {
+	for (int i = 0; i < BUCKETS; i++)
+	    counts[i] = 0;
+	count = total = max = overruns = 0;
+    }
+}
+
+// Fin du fichier
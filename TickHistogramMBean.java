@@ -0,0 +1,60 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : TickHistogramMBean.java
+ *
+ * Description : L'interface TickHistogramMBean décrit les attributs et
+ *               opérations d'un histogramme de durées (voir TickHistogram)
+ *               publiés par JMX.
+ *
+ * Commentaire : Les durées sont exprimées en microsecondes.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+/**
+ * L'interface TickHistogramMBean, vue JMX d'un histogramme de durées
+ */
+public interface TickHistogramMBean
+{
+    // Nombre de mesures, durée moyenne et durée maximale
+    public long getCount();
+    public long getMeanMicros();
+    public long getMaxMicros();
+
+    // Centiles (borne supérieure de l'intervalle de l'histogramme atteint)
+    public long getP50Micros();
+    public long getP90Micros();
+    public long getP99Micros();
+
+    // Nombre de mesures dépassant la durée d'un tour, et cette durée
+    public long getOverrunCount();
+    public long getOverrunThresholdMicros();
+
+    // Remise à zéro
+    public void reset();
+}
+
+// Fin du fichier
@@ -0,0 +1,142 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : TickMetrics.java
+ *
+ * Description : La classe TickMetrics regroupe les histogrammes des durées de
+ *               chaque phase d'un tour de jeu et les publie par JMX.
+ *
+ * Commentaire : Chaque histogramme est publié sous le nom
+ *               facman:type=TickMetrics,phase=<phase>. Si la publication est
+ *               refusée (applet), les mesures sont tout de même effectuées.
+ *               Une nouvelle partie remplace les histogrammes publiés par la
+ *               précédente, qui les retire en se terminant.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * La classe TickMetrics, mesures des durées des tours de jeu
+ */
+class TickMetrics
+{
+    // Phases mesurées : tour complet, effacement des personnages,
+    // déplacements, dessin des personnages, affichage des textes, et image
+    // intermédiaire de l'affichage interpolé
+    static         final int      TICK = 0, CLEAR = 1, MOVE = 2, DRAW = 3;
+    static         final int      HUD = 4, FRAME = 5;
+    private static final String[] PHASES = {
+	"tick", "clear", "move", "draw", "hud", "frame"
+    };
+
+    // Histogrammes de chaque phase
+    private final TickHistogram[] histograms =
+	new TickHistogram[PHASES.length];
+
+    /**
+     * Constructeur ; le seuil de dépassement est en nanosecondes
+     */
+    public TickMetrics(final long threshold)
+    {
+	for (int phase = 0; phase < PHASES.length; phase++)
+	    histograms[phase] = new TickHistogram(threshold);
+    }
+
+    /**
+     * Publie les histogrammes auprès du serveur JMX de la plate-forme, à la
+     * place de ceux d'une partie précédente ; retourne false si ce n'est pas
+     * possible
+     */
+    public boolean register()
+    {
+	try {
+	    final MBeanServer server =
+		ManagementFactory.getPlatformMBeanServer();
+
+	    for (int phase = 0; phase < PHASES.length; phase++) {
+		final ObjectName name = getName(phase);
+		if (server.isRegistered(name))
+		    server.unregisterMBean(name);
+		server.registerMBean(histograms[phase], name);
+	    }
+	    return true;
+	} catch (Exception e) {
+	    // Publication impossible (droits insuffisants, par exemple)
+	    return false;
+	}
+    }
+
+    /**
+     * Retire du serveur JMX de la plate-forme les histogrammes publiés par
+     * register()
+     */
+    public void unregister()
+    {
+	try {
+	    final MBeanServer server =
+		ManagementFactory.getPlatformMBeanServer();
+
+	    for (int phase = 0; phase < PHASES.length; phase++) {
+		final ObjectName name = getName(phase);
+		if (server.isRegistered(name))
+		    server.unregisterMBean(name);
+	    }
+	} catch (Exception e) {
+	    // Rien n'a été publié, ou le retrait est refusé
+	}
+    }
+
+    /**
+     * Obtient le nom JMX de l'histogramme d'une phase
+     */
+    private static ObjectName getName(final int phase) throws Exception
+    {
+	return new ObjectName("facman:type=TickMetrics,phase=" +
+			      PHASES[phase]);
+    }
+
+    /**
+     * Enregistre la durée d'une phase, en nanosecondes
+     */
+    public void record(final int phase, final long time)
+    {
+	histograms[phase].record(time);
+    }
+
+    /**
+     * Obtient l'histogramme d'une phase
+     */
+    public TickHistogram getHistogram(final int phase)
+    {
+	return histograms[phase];
+    }
+}
+
+// Fin du fichier
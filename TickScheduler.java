@@ -0,0 +1,253 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : TickScheduler.java
+ *
+ * Description : La classe TickScheduler cadence des tâches par créneaux de
+ *               durée fixe : toutes les tâches dues dans un même créneau sont
+ *               exécutées ensemble, par lots, sur un pool fork/join.
+ *
+ * Commentaire : Le retard de chaque créneau et sa durée sont mesurés et
+ *               publiés par JMX ; une moyenne glissante de la durée des
+ *               créneaux indique quand le serveur doit délester, c'est-à-dire
+ *               refuser de nouvelles tâches.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * La classe TickScheduler, horloge partagée par de nombreuses tâches
+ * périodiques (les parties du serveur, voir GameServer) : à chaque
+ * créneau, les tâches sont réparties en lots exécutés en parallèle par
+ * vol de travail, et l'appelant attend la fin du créneau
+ */
+class TickScheduler
+{
+    /**
+     * Tâche exécutée une fois par créneau ; les tâches d'un même créneau
+     * s'exécutent en parallèle et ne doivent partager aucun état modifiable
+     */
+    interface Task
+    {
+	public void tick();
+    }
+
+    // Nombre de tâches en dessous duquel un lot n'est plus divisé
+    private static final int THRESHOLD = 64;
+
+    // Retard, en créneaux, au-delà duquel les créneaux manqués sont
+    // abandonnés plutôt que rattrapés
+    private static final int MAX_LATE_SLOTS = 5;
+
+    // Délestage : la charge est la moyenne glissante de la durée des
+    // créneaux (poids 1/LOAD_WEIGHT pour le dernier) ; au-dessus de
+    // SHED_LOAD pour-cent de la période, il faut délester, jusqu'à ce
+    // qu'elle redescende sous RECOVER_LOAD pour-cent
+    private static final int LOAD_WEIGHT = 8;
+    private static final int SHED_LOAD = 75, RECOVER_LOAD = 50;
+
+    // Pool d'exécution, période et début du prochain créneau, en
+    // nanosecondes
+    private final ForkJoinPool pool = new ForkJoinPool();
+    private final long         period;
+    private       long         next;
+
+    // Charge, délestage en cours et nombre de créneaux abandonnés
+    private long    load = 0;
+    private boolean overloaded = false;
+    private int     skipped = 0;
+
+    // Retard du début de chaque créneau sur son heure prévue, et durée de
+    // chaque créneau ; un dépassement est un retard ou une durée d'au moins
+    // une période
+    private final TickHistogram lags, durations;
+
+    /**
+     * Lot de tâches, divisé en deux tant qu'il est trop grand
+     */
+    private static class Batch extends RecursiveAction
+    {
+	private final ArrayList tasks;
+	private final int       start, end;
+
+	Batch(final ArrayList tasks, final int start, final int end)
+	{
+	    this.tasks = tasks;
+	    this.start = start;
+	    this.end   = end;
+	}
+
+	protected void compute()
+	{
+	    if (end - start <= THRESHOLD) {
+		for (int i = start; i < end; i++)
+		    ((Task) tasks.get(i)).tick();
+		return;
+	    }
+
+	    final int middle = (start + end) >>> 1;
+	    invokeAll(new Batch(tasks, start, middle),
+		      new Batch(tasks, middle, end));
+	}
+    }
+
+    /**
+     * Constructeur ; la période est en nanosecondes et le premier créneau
+     * commence une période plus tard
+     */
+    public TickScheduler(final long period)
+    {
+	this.period = period;
+	next = System.nanoTime() + period;
+	lags = new TickHistogram(period);
+	durations = new TickHistogram(period);
+    }
+
+    /**
+     * Publie les histogrammes du retard et de la durée des créneaux auprès
+     * du serveur JMX de la plate-forme ; retourne false si ce n'est pas
+     * possible
+     */
+    public boolean register()
+    {
+	try {
+	    final MBeanServer server =
+		ManagementFactory.getPlatformMBeanServer();
+	    final ObjectName  lag = new ObjectName(
+		"facman:type=TickScheduler,measure=lag");
+	    final ObjectName  duration = new ObjectName(
+		"facman:type=TickScheduler,measure=slot");
+
+	    if (!server.isRegistered(lag))
+		server.registerMBean(lags, lag);
+	    if (!server.isRegistered(duration))
+		server.registerMBean(durations, duration);
+	    return true;
+	} catch (Exception e) {
+	    // Publication impossible (droits insuffisants, par exemple)
+	    return false;
+	}
+    }
+
+    /**
+     * Obtient le temps restant avant le prochain créneau, en nanosecondes
+     * (négatif s'il est dû)
+     */
+    public long getDelay()
+    {
+	return next - System.nanoTime();
+    }
+
+    /**
+     * Exécute les créneaux dus, chacun sur toutes les tâches de la liste
+     * (objets Task), qui ne doit pas changer pendant l'appel ; retourne le
+     * nombre de créneaux exécutés
+     */
+    public int runDueSlots(final ArrayList tasks)
+    {
+	final long now = System.nanoTime();
+	int        slots = 0;
+
+	// Un retard trop important est abandonné, en gardant la phase des
+	// créneaux
+	if (now - next > MAX_LATE_SLOTS * period) {
+	    final long late = (now - next) / period;
+	    skipped += (int) late;
+	    next += late * period;
+	}
+
+	while (now - next >= 0) {
+	    final long start = System.nanoTime();
+	    lags.record(start - next);
+	    if (!tasks.isEmpty())
+		pool.invoke(new Batch(tasks, 0, tasks.size()));
+
+	    // Durée et charge, avec hystérésis pour le délestage
+	    final long time = System.nanoTime() - start;
+	    durations.record(time);
+	    load += (time - load) / LOAD_WEIGHT;
+	    overloaded = load * 100 > period *
+		(overloaded ? RECOVER_LOAD : SHED_LOAD);
+
+	    next += period;
+	    slots++;
+	}
+
+	return slots;
+    }
+
+    /**
+     * Permet de savoir s'il faut délester, c'est-à-dire refuser de nouvelles
+     * tâches, les créneaux prenant trop de temps
+     */
+    public boolean isOverloaded()
+    {
+	return overloaded;
+    }
+
+    /**
+     * Obtient et remet à zéro le nombre de créneaux abandonnés
+     */
+    public int takeSkipped()
+    {
+	final int count = skipped;
+	skipped = 0;
+	return count;
+    }
+
+    /**
+     * Obtient l'histogramme du retard des créneaux
+     */
+    public TickHistogram getLags()
+    {
+	return lags;
+    }
+
+    /**
+     * Obtient l'histogramme de la durée des créneaux
+     */
+    public TickHistogram getDurations()
+    {
+	return durations;
+    }
+
+    /**
+     * Obtient le nombre de threads du pool
+     */
+    public int getParallelism()
+    {
+	return pool.getParallelism();
+    }
+}
+
+// Fin du fichier
@@ -0,0 +1,97 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : TimerClock.java
+ *
+ * Description : La classe TimerClock cadence le jeu au moyen d'un timer Swing,
+ *               dans le thread de gestion des événements.
+ *
+ * Commentaire : C'est l'horloge utilisée par défaut.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+// Imports
+import javax.swing.Timer;
+
+/**
+ * La classe TimerClock, horloge utilisant un timer Swing
+ */
+class TimerClock extends GameClock
+{
+    // Timer et délai entre deux tours
+    private final Timer timer;
+    private final int   delay;
+
+    /**
+     * Constructeur
+     */
+    public TimerClock(final int delay)
+    {
+	this.delay = delay;
+	timer = new Timer(delay, null);
+    }
+
+    /**
+     * Définit le jeu appelé à chaque tour
+     */
+    public void setGame(final Game game)
+    {
+	if (this.game != null)
+	    timer.removeActionListener(this.game);
+	super.setGame(game);
+	timer.addActionListener(game);
+    }
+
+    /**
+     * Démarre (ou redémarre) le timer
+     */
+    public void start()
+    {
+	timer.setInitialDelay(delay);
+	timer.setRepeats(true);
+	timer.restart();
+    }
+
+    /**
+     * Arrête le timer
+     */
+    public void stop()
+    {
+	timer.stop();
+    }
+
+    /**
+     * Endort le jeu en modifiant le timer
+     */
+    public void sleep(final int time)
+    {
+	timer.setInitialDelay(time);
+	timer.setRepeats(false);
+	timer.restart();
+    }
+}
+
+// Fin du fichier
@@ -0,0 +1,132 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : BoardBenchmark.java
+ *
+ * Description : Mesure des méthodes de la classe Board : consommation des
+ *               pastilles et chargement des niveaux.
+ *
+ * Commentaire : La mesure de eatGum() porte sur toutes les cases d'un niveau,
+ *               rechargé avant chaque appel.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+package facman;
+
+// Imports
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * La classe BoardBenchmark, qui mesure la grille de jeu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BoardBenchmark
+{
+    // Grille et position courante
+    private       Board    board;
+    private final Position pos = new Position();
+
+    /**
+     * Charge les niveaux
+     */
+    @Setup
+    public void setup()
+    {
+	board = Levels.start(1, 1).getBoard();
+    }
+
+    /**
+     * Remet les pastilles du premier niveau avant chaque appel de eatGum()
+     */
+    @Setup(Level.Invocation)
+    public void reload()
+    {
+	board.restartLevel();
+    }
+
+    /**
+     * Mange les pastilles de toutes les cases
+     */
+    @Benchmark
+    @OperationsPerInvocation(Levels.BOXES)
+    public void eatGum(final Blackhole hole)
+    {
+	final int width = board.getWidth();
+	final int height = board.getHeight();
+
+	for (int y = 0; y < height; y++)
+	    for (int x = 0; x < width; x++) {
+		pos.setPosition(x, y);
+		hole.consume(board.eatGum(pos));
+	    }
+    }
+
+    /**
+     * Initialise le premier niveau
+     */
+    @Benchmark
+    public boolean load()
+    {
+	board.resetLevel();
+	return board.nextLevel();
+    }
+
+    /**
+     * Recommence le niveau courant
+     */
+    @Benchmark
+    public int restartLevel()
+    {
+	board.restartLevel();
+	return board.getGumCount();
+    }
+
+    /**
+     * Lit tous les fichiers de niveau
+     */
+    @Benchmark
+    public int loadLevels()
+    {
+	final Board board = new Board();
+	board.loadLevels();
+	return board.getLevelCount();
+    }
+}
+
+// Fin du fichier
@@ -0,0 +1,95 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : CharacterBenchmark.java
+ *
+ * Description : Mesure des méthodes canMove() et move() de la classe
+ *               Character, appelées plusieurs fois par personnage et par tour.
+ *
+ * Commentaire : Les mesures sont faites sur Pacman, à sa position initiale du
+ *               premier niveau.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+package facman;
+
+// Imports
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * La classe CharacterBenchmark, qui mesure les tests et les mouvements
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CharacterBenchmark
+{
+    // Personnage utilisé
+    private Pacman pacman;
+
+    /**
+     * Prépare le premier niveau
+     */
+    @Setup
+    public void setup()
+    {
+	pacman = Levels.start(1, 1).getPacman();
+    }
+
+    /**
+     * Teste les quatre directions depuis une case
+     */
+    @Benchmark
+    @OperationsPerInvocation(Character.NB_DIRS)
+    public void canMove(final Blackhole hole)
+    {
+	for (int dir = 0; dir < Character.NB_DIRS; dir++)
+	    hole.consume(pacman.canMove(dir));
+    }
+
+    /**
+     * Effectue un aller-retour d'un pas
+     */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void move()
+    {
+	pacman.move(Character.LEFT);
+	pacman.move(Character.RIGHT);
+    }
+}
+
+// Fin du fichier
@@ -0,0 +1,85 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : GhostBenchmark.java
+ *
+ * Description : Mesure de la méthode doMove() de la classe Ghost, c'est-à-dire
+ *               de l'intelligence artificielle, pour chaque difficulté.
+ *
+ * Commentaire : Pacman reste immobile à sa position initiale ; le fantôme se
+ *               déplace librement sans jamais être mangé.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+package facman;
+
+// Imports
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * La classe GhostBenchmark, qui mesure le déplacement d'un fantôme
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GhostBenchmark
+{
+    // Difficulté (voir HomeScreen)
+    @Param({"0", "1", "2", "3"})
+    public int difficulty;
+
+    // Fantôme déplacé
+    private Ghost ghost;
+
+    /**
+     * Prépare le premier niveau
+     */
+    @Setup
+    public void setup()
+    {
+	ghost = Levels.start(1, difficulty).getGhost(0);
+    }
+
+    /**
+     * Effectue un mouvement du fantôme
+     */
+    @Benchmark
+    public void doMove()
+    {
+	ghost.doMove();
+    }
+}
+
+// Fin du fichier
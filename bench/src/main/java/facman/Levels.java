@@ -0,0 +1,105 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : Levels.java
+ *
+ * Description : Fonctions utilitaires communes aux mesures de performances :
+ *               préparation d'une simulation sur un niveau donné et séquence
+ *               de touches jouée par un Pacman automatique.
+ *
+ * Commentaire : Comme les autres classes de ce module, elle se trouve dans le
+ *               paquetage facman où sont recopiées les sources du jeu.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+package facman;
+
+// Imports
+import java.util.Random;
+
+/**
+ * La classe Levels, qui prépare les simulations utilisées par les mesures
+ */
+final class Levels
+{
+    // Nombre de cases d'un niveau
+    static final int BOXES = 19 * 13;
+
+    // Nombre de touches dans une séquence (puissance de 2)
+    static final int KEYS = 1024;
+
+    /**
+     * Constructeur privé : classe utilitaire
+     */
+    private Levels() {}
+
+    /**
+     * Crée une simulation sans affichage positionnée sur le niveau indiqué
+     * (à partir de 1), avec la difficulté indiquée
+     */
+    static Simulation start(final int level, final int difficulty)
+    {
+	final Simulation simulation = new Simulation(new Board());
+	simulation.getBoard().loadLevels();
+	simulation.setDifficulty(difficulty);
+	restart(simulation, level);
+	return simulation;
+    }
+
+    /**
+     * Recharge le niveau indiqué et replace les personnages
+     */
+    static void restart(final Simulation simulation, final int level)
+    {
+	simulation.resetGame();
+	for (int i = 0; i < level; i++)
+	    if (!simulation.nextLevel())
+		throw new IllegalArgumentException("Niveau inexistant : " +
+						   level);
+    }
+
+    /**
+     * Crée une séquence de touches de direction aléatoire mais
+     * reproductible : chaque direction est maintenue entre 4 et 32 tours
+     */
+    static int[] keys(final long seed)
+    {
+	final Random random = new Random(seed);
+	final int[]  keys = new int[KEYS];
+	int i = 0;
+
+	while (i < KEYS) {
+	    final int key = 1 << random.nextInt(4);
+	    for (int n = 4 + random.nextInt(29); n > 0 && i < KEYS; n--)
+		keys[i++] = key;
+	}
+
+	return keys;
+    }
+}
+
+// Fin du fichier
@@ -0,0 +1,83 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : PacmanBenchmark.java
+ *
+ * Description : Mesure de la méthode doMove() de la classe Pacman, qui inclut
+ *               les tests de mouvement et la consommation des pastilles.
+ *
+ * Commentaire : Les touches suivent une séquence aléatoire reproductible.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+package facman;
+
+// Imports
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * La classe PacmanBenchmark, qui mesure le déplacement de Pacman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PacmanBenchmark
+{
+    // Pacman et les touches qui lui sont transmises
+    private Pacman pacman;
+    private int[]  keys;
+    private int    tick = 0;
+
+    /**
+     * Prépare le premier niveau
+     */
+    @Setup
+    public void setup()
+    {
+	pacman = Levels.start(1, 1).getPacman();
+	keys = Levels.keys(1);
+    }
+
+    /**
+     * Effectue un mouvement de Pacman
+     */
+    @Benchmark
+    public void doMove()
+    {
+	pacman.setKeys(keys[tick++ & (Levels.KEYS - 1)]);
+	pacman.doMove();
+    }
+}
+
+// Fin du fichier
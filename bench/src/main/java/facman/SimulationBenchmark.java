@@ -0,0 +1,119 @@
+/*
+ * ---------------------------------------------------------------------------
+ *
+ * Facman -- Un clône de Pacman en Java
+ * Copyright (c) 2004 Benjamin Gaillard & Lionel Imbs
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Fichier     : SimulationBenchmark.java
+ *
+ * Description : Mesure d'un tour de jeu complet (Simulation.step()) sur
+ *               chacun des niveaux.
+ *
+ * Commentaire : Pacman suit une séquence de touches aléatoire reproductible ;
+ *               quand il est mangé les personnages sont replacés, et le
+ *               niveau est rechargé quand il est terminé. Les niveaux sont
+ *               énumérés à la préparation d'après Board.getLevelCount() :
+ *               une opération joue un tour sur chacun d'eux. L'option
+ *               -p level=N de JMH restreint la mesure au niveau N.
+ *
+ * ---------------------------------------------------------------------------
+ *
+ * Ce programme est un logiciel libre ; vous pouvez le redistribuer et/ou le
+ * modifier conformément aux dispositions de la Licence Publique Générale GNU,
+ * telle que publiée par la Free Software Foundation ; version 2 de la
+ * licence, ou encore (à votre convenance) toute version ultérieure.
+ *
+ * Ce programme est distribué dans l'espoir qu'il sera utile, mais SANS AUCUNE
+ * GARANTIE ; sans même la garantie implicite de COMMERCIALISATION ou
+ * D'ADAPTATION À UN OBJET PARTICULIER. Pour plus de détail, voir la Licence
+ * Publique Générale GNU.
+ *
+ * Vous devez avoir reçu un exemplaire de la Licence Publique Générale GNU en
+ * même temps que ce programme ; si ce n'est pas le cas, écrivez à la Free
+ * Software Foundation Inc., 675 Mass Ave, Cambridge, MA 02139, États-Unis.
+ *
+ * ---------------------------------------------------------------------------
+ */
+
+
+
+package facman;
+
+// Imports
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * La classe SimulationBenchmark, qui mesure un tour de jeu sur chacun des
+ * niveaux
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SimulationBenchmark
+{
+    // Niveau joué (0 : tous les niveaux)
+    @Param({"0"})
+    public int level;
+
+    // Simulations et touches transmises à Pacman, une par niveau
+    private Simulation[] simulations;
+    private int[][]      keys;
+    private int          tick = 0;
+
+    /**
+     * Prépare chacun des niveaux mesurés
+     */
+    @Setup
+    public void setup()
+    {
+	final Simulation first = Levels.start(Math.max(level, 1), 1);
+	final int        count = level > 0
+	    ? 1 : first.getBoard().getLevelCount();
+
+	simulations = new Simulation[count];
+	keys        = new int[count][];
+	simulations[0] = first;
+	for (int i = 0; i < count; i++) {
+	    final int number = level > 0 ? level : i + 1;
+	    if (i > 0)
+		simulations[i] = Levels.start(number, 1);
+	    keys[i] = Levels.keys(number);
+	}
+    }
+
+    /**
+     * Effectue un tour de jeu sur chacun des niveaux
+     */
+    @Benchmark
+    public int step()
+    {
+	final int key = tick++ & (Levels.KEYS - 1);
+	int       all = 0;
+
+	for (int i = 0; i < simulations.length; i++) {
+	    final Simulation simulation = simulations[i];
+	    final int        events = simulation.step(keys[i][key]);
+
+	    // Continue la partie sur le même niveau
+	    if ((events & Simulation.EVENT_WON) != 0)
+		simulation.restartLevel();
+	    else if ((events & Simulation.EVENT_EATEN) != 0)
+		simulation.initCharacters();
+	    all |= events;
+	}
+
+	return all;
+    }
+}
+
+// Fin du fichier